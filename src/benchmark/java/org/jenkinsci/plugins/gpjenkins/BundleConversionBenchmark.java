@@ -0,0 +1,67 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.g11n.pipeline.client.ResourceEntryData;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
+
+/**
+ * Conversion of the resource entries returned by the service to the bundle
+ * handed to the resource filters, as done for each exported language.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BundleConversionBenchmark {
+
+	@Param({ "10", "1000", "100000" })
+	public int keys;
+
+	private Map<String, ResourceEntryData> entries;
+
+	@Setup
+	public void setUp() {
+		entries = SyntheticBundles.resourceEntries(keys);
+	}
+
+	@Benchmark
+	public LanguageBundle translatedWithFallback() {
+		return GlobalizationPipelineRunner.toLanguageBundle(entries, "fr", false, true);
+	}
+
+	@Benchmark
+	public LanguageBundle reviewedOnly() {
+		return GlobalizationPipelineRunner.toLanguageBundle(entries, "fr", true, false);
+	}
+}
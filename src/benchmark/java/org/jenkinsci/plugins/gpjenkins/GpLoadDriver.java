@@ -0,0 +1,211 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Result;
+import hudson.util.Secret;
+import hudson.util.StreamTaskListener;
+
+/**
+ * Load test of the upload and download goals against a
+ * {@link FakeGlobalizationPipelineServer}. A synthetic workspace with one
+ * resource bundle per file is uploaded and then downloaded, and the
+ * throughput of each goal, the latency of each service operation as seen by
+ * the server, and the phases recorded by the build step are reported.
+ *
+ * <p>
+ * The options, with their defaults, are:
+ * <pre>
+ * --bundles 50        number of resource bundles in the workspace
+ * --keys 200          number of keys per bundle
+ * --languages 3       number of target languages
+ * --threads 4         concurrent bundle threads of the build step
+ * --latency 20        service latency in milliseconds
+ * --jitter 10         random latency added to each call, in milliseconds
+ * --error-rate 0      ratio of calls failing with an internal server error
+ * --throttle-rate 0   ratio of calls rejected with 429 Too Many Requests
+ * --max-concurrent 0  number of concurrent calls above which calls are rejected with 429
+ * --retries 3         service call retries of the build step
+ * --virtual-threads   run the bundle tasks on virtual threads (Java 21 or later)
+ * --verbose           print the console output of the build step
+ * </pre>
+ */
+public final class GpLoadDriver {
+
+	private static final String[] LANGUAGES = { "de", "es", "fr", "it", "ja", "ko", "pt-BR", "zh-Hans", "zh-Hant", "ru" };
+
+	private GpLoadDriver() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = parseOptions(args);
+		int bundleCount = Integer.parseInt(option(options, "bundles", "50"));
+		int keyCount = Integer.parseInt(option(options, "keys", "200"));
+		int languageCount = Math.min(LANGUAGES.length, Integer.parseInt(option(options, "languages", "3")));
+		boolean verbose = options.containsKey("verbose");
+
+		FakeGlobalizationPipelineServer server = new FakeGlobalizationPipelineServer();
+		server.setLatency(Long.parseLong(option(options, "latency", "20")), Long.parseLong(option(options, "jitter", "10")));
+		server.setErrorRate(Double.parseDouble(option(options, "error-rate", "0")));
+		server.setThrottleRate(Double.parseDouble(option(options, "throttle-rate", "0")));
+		server.setMaxConcurrentRequests(Integer.parseInt(option(options, "max-concurrent", "0")));
+		server.start();
+
+		File workspace = Files.createTempDirectory("gp-load").toFile();
+		try {
+			createWorkspace(workspace, bundleCount, keyCount);
+
+			StringBuilder langMap = new StringBuilder("{");
+			for (int i = 0; i < languageCount; i++) {
+				langMap.append(i == 0 ? "" : ",").append('"').append(LANGUAGES[i]).append("\":\"").append(LANGUAGES[i]).append('"');
+			}
+			langMap.append('}');
+
+			System.out.println("Workspace : " + workspace + " (" + bundleCount + " bundles, " + keyCount
+					+ " keys, " + languageCount + " target languages)");
+			System.out.println("Service : " + server.getUrl());
+			System.out.println();
+
+			for (String goal : new String[] { "upload", "download" }) {
+				GlobalizationPipelineBuilder builder = new GlobalizationPipelineBuilder(
+						FakeGlobalizationPipelineServer.INSTANCE_ID, server.getUrl(), "load", secret("load"),
+						goal, "src", "**/*.properties", "", "en", "java", langMap.toString(),
+						"bcp47_underscore", false, "merge_to_src", "lang_suffix", "out", true);
+				builder.setThreadPoolSize(Integer.valueOf(option(options, "threads", "4")));
+				builder.setMaxRetries(Integer.valueOf(option(options, "retries", "3")));
+				builder.setVirtualThreads(options.containsKey("virtual-threads"));
+				run(goal, builder, server, new FilePath(workspace), bundleCount, verbose);
+			}
+		} finally {
+			server.stop();
+			Util.deleteRecursive(workspace);
+		}
+	}
+
+	private static void run(String goal, GlobalizationPipelineBuilder builder, FakeGlobalizationPipelineServer server,
+			FilePath workspace, int bundleCount, boolean verbose) throws IOException, InterruptedException {
+		for (FakeGlobalizationPipelineServer.Operation operation : FakeGlobalizationPipelineServer.Operation.values()) {
+			server.getLatencies(operation).reset();
+		}
+		int errors = server.getInjectedErrors();
+		int throttled = server.getThrottledRequests();
+
+		OutputStream console = verbose ? System.out : new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+			}
+		};
+		long start = System.nanoTime();
+		// There is no Jenkins controller in this JVM, so the goal runs as on an agent
+		GlobalizationPipelineRunner.Summary summary = new GlobalizationPipelineRunner(builder, null, null, false)
+				.execute(workspace, new StreamTaskListener(console), true);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		Result result = summary.getResult();
+		PrintStream out = System.out;
+		out.println(String.format("%-8s : %s in %.2f s, %.1f bundles/s, %d injected errors, %d throttled calls",
+				goal, result == null ? "SUCCESS" : result.toString(), seconds, bundleCount / seconds,
+				server.getInjectedErrors() - errors, server.getThrottledRequests() - throttled));
+		for (FakeGlobalizationPipelineServer.Operation operation : FakeGlobalizationPipelineServer.Operation.values()) {
+			FakeGlobalizationPipelineServer.LatencyRecorder latencies = server.getLatencies(operation);
+			if (latencies.getCount() > 0) {
+				out.println(String.format("    %-16s %6d calls, p50 %8.2f ms, p99 %8.2f ms", operation,
+						latencies.getCount(), latencies.getPercentileMillis(50), latencies.getPercentileMillis(99)));
+			}
+		}
+		// Phases as recorded by the build step itself
+		for (StepMetrics.Stats stats : summary.getMetrics().getPhases()) {
+			out.println(String.format("    %-16s %6d times, total %8d ms, p50 %8.2f ms, p99 %8.2f ms, %d bytes",
+					stats.getName(), stats.getCount(), stats.getTotalMillis(), stats.getP50Millis(),
+					stats.getP99Millis(), stats.getBytes()));
+		}
+		out.println();
+	}
+
+	/**
+	 * Writes the source bundles, spread over a few directories like in a
+	 * real project.
+	 */
+	private static void createWorkspace(File workspace, int bundleCount, int keyCount) throws IOException {
+		for (int i = 0; i < bundleCount; i++) {
+			File dir = new File(workspace, "src/module" + (i % 10) + "/nls");
+			if (!dir.isDirectory() && !dir.mkdirs()) {
+				throw new IOException("Cannot create " + dir);
+			}
+			Properties properties = new Properties();
+			for (int k = 0; k < keyCount; k++) {
+				properties.setProperty("key" + k, "Message " + k + " of bundle " + i);
+			}
+			try (Writer writer = Files.newBufferedWriter(new File(dir, "Messages" + i + ".properties").toPath(),
+					StandardCharsets.ISO_8859_1)) {
+				properties.store(writer, null);
+			}
+		}
+	}
+
+	/**
+	 * Creates a secret without a running Jenkins, which {@link Secret#fromString(String)}
+	 * needs to look up the encryption key.
+	 */
+	private static Secret secret(String value) {
+		try {
+			Constructor<Secret> constructor = Secret.class.getDeclaredConstructor(String.class);
+			constructor.setAccessible(true);
+			return constructor.newInstance(value);
+		} catch (ReflectiveOperationException e) {
+			return Secret.fromString(value);
+		}
+	}
+
+	private static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int i = 0; i < args.length; i++) {
+			if (!args[i].startsWith("--")) {
+				throw new IllegalArgumentException("Unknown argument: " + args[i]);
+			}
+			String name = args[i].substring(2);
+			if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+				options.put(name, args[++i]);
+			} else {
+				options.put(name, "");
+			}
+		}
+		return options;
+	}
+
+	private static String option(Map<String, String> options, String name, String defaultValue) {
+		String value = options.get(name);
+		return value == null || value.isEmpty() ? defaultValue : value;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hudson.FilePath;
+
+/**
+ * Bundle ID and output path resolution of the source files, for a local
+ * workspace. The legacy path computation is kept for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PathResolutionBenchmark {
+
+	private static final String BASE_DIR = "src/main/resources";
+
+	@Param({ "1000" })
+	public int files;
+
+	@Param({ "lang_suffix", "lang_only", "lang_subdir", "lang_dir" })
+	public String bundleLayout;
+
+	private FilePath baseDirectory;
+	private FilePath outDirectory;
+	private String[] relativePaths;
+	private FilePath[] filePaths;
+	private SourceFile[] sourceFiles;
+
+	@Setup
+	public void setUp() {
+		File workspace = new File(System.getProperty("java.io.tmpdir"), "gp-benchmark-workspace");
+		baseDirectory = new FilePath(new File(workspace, BASE_DIR));
+		outDirectory = new FilePath(new File(workspace, "target/classes"));
+		relativePaths = new String[files];
+		filePaths = new FilePath[files];
+		sourceFiles = new SourceFile[files];
+		for (int i = 0; i < files; i++) {
+			relativePaths[i] = "com/example/module" + (i % 50) + "/en/Messages" + i + "_en.properties";
+			filePaths[i] = new FilePath(baseDirectory, relativePaths[i]);
+			sourceFiles[i] = new SourceFile(baseDirectory, relativePaths[i], "JAVA", "lang_suffix");
+		}
+	}
+
+	@Benchmark
+	public void resolveSourceFiles(Blackhole blackhole) {
+		for (String relativePath : relativePaths) {
+			blackhole.consume(new SourceFile(baseDirectory, relativePath, "JAVA", "lang_suffix").getBundleId());
+		}
+	}
+
+	@Benchmark
+	public void resolveOutputFiles(Blackhole blackhole) {
+		for (SourceFile sourceFile : sourceFiles) {
+			blackhole.consume(sourceFile.getOutputFile(outDirectory, bundleLayout, "fr", "en", false));
+		}
+	}
+
+	@Benchmark
+	public void computeParentFromBaseDir(Blackhole blackhole) throws IOException, InterruptedException {
+		for (FilePath filePath : filePaths) {
+			blackhole.consume(GlobalizationPipelineRunner.computeParentFromBaseDir(BASE_DIR, filePath));
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.g11n.pipeline.resfilter.FilterOptions;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterFactory;
+
+/**
+ * Parsing of source files for upload, and writing and merging of translated
+ * files for download, for each resource type offered by the build step.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ResourceFilterBenchmark {
+
+	@Param({ "JAVA", "JAVAUTF8", "JAVAMSG", "JAVAMSGUTF8", "JSON", "AMDJS", "IOS", "ANDROID", "PO", "POT",
+			"YML", "XLIFF", "CSV" })
+	public String type;
+
+	@Param({ "10", "1000", "100000" })
+	public int keys;
+
+	private ResourceFilter filter;
+	private FilterOptions options;
+	private byte[] source;
+	private LanguageBundle translated;
+
+	@Setup
+	public void setUp() throws IOException, ResourceFilterException {
+		filter = ResourceFilterFactory.getResourceFilter(type);
+		if (filter == null) {
+			throw new IllegalStateException("Resource filter for " + type + " is not available");
+		}
+		options = new FilterOptions(Locale.FRENCH);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		filter.write(out, SyntheticBundles.languageBundle(keys, false), new FilterOptions(Locale.ENGLISH));
+		source = out.toByteArray();
+		translated = SyntheticBundles.languageBundle(keys, true);
+	}
+
+	@Benchmark
+	public LanguageBundle parse() throws IOException, ResourceFilterException {
+		return filter.parse(new ByteArrayInputStream(source), options);
+	}
+
+	@Benchmark
+	public int write() throws IOException, ResourceFilterException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(source.length);
+		filter.write(out, translated, options);
+		return out.size();
+	}
+
+	@Benchmark
+	public int merge() throws IOException, ResourceFilterException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(source.length);
+		filter.merge(new ByteArrayInputStream(source), out, translated, options);
+		return out.size();
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.StringReader;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.reflect.TypeToken;
+import com.ibm.g11n.pipeline.client.ResourceEntryData;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.ResourceString;
+
+/**
+ * Synthetic bundles for the benchmarks, with keys and values shaped like
+ * typical UI strings.
+ */
+final class SyntheticBundles {
+
+	private SyntheticBundles() {
+	}
+
+	static String key(int i) {
+		return String.format("key_%06d", i);
+	}
+
+	static String sourceValue(int i) {
+		return "Message number " + i + " of the application";
+	}
+
+	static String translatedValue(int i) {
+		return "Message numéro " + i + " de l'application";
+	}
+
+	/**
+	 * Returns resource entries as returned by the service. Every other entry
+	 * is reviewed, and every tenth entry is not translated yet.
+	 */
+	static Map<String, ResourceEntryData> resourceEntries(int keys) {
+		JsonObject entries = new JsonObject();
+		for (int i = 0; i < keys; i++) {
+			JsonObject entry = new JsonObject();
+			if (i % 10 != 0) {
+				entry.addProperty("value", translatedValue(i));
+			}
+			entry.addProperty("sourceValue", sourceValue(i));
+			entry.addProperty("reviewed", i % 2 == 0);
+			entry.addProperty("sequenceNumber", i + 1);
+			if (i % 5 == 0) {
+				JsonArray notes = new JsonArray();
+				notes.add(new JsonPrimitive("Note for " + key(i)));
+				entry.add("notes", notes);
+			}
+			entries.add(key(i), entry);
+		}
+		return new Gson().fromJson(new StringReader(entries.toString()),
+				new TypeToken<Map<String, ResourceEntryData>>() {
+				}.getType());
+	}
+
+	/**
+	 * Returns a bundle with the given number of resource strings.
+	 */
+	static LanguageBundle languageBundle(int keys, boolean translated) {
+		LanguageBundleBuilder bundleBuilder = new LanguageBundleBuilder(false);
+		for (int i = 0; i < keys; i++) {
+			bundleBuilder.addResourceString(ResourceString
+					.with(key(i), translated ? translatedValue(i) : sourceValue(i))
+					.sourceValue(sourceValue(i))
+					.sequenceNumber(i + 1));
+		}
+		return bundleBuilder.build();
+	}
+}
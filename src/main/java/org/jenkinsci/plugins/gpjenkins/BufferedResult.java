@@ -0,0 +1,84 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+
+import hudson.model.Result;
+
+/**
+ * Outcome of a unit of work run on a worker thread.
+ *
+ * <p>
+ * Console output produced by the work is kept in a buffer, so that results of
+ * work done concurrently can be printed in a deterministic order.
+ */
+class BufferedResult {
+
+	private static final String ENCODING = "UTF-8";
+
+	private final ByteArrayOutputStream logBuffer = new ByteArrayOutputStream();
+	private final PrintStream logger;
+
+	private Result failure;
+	private String failureMessage;
+
+	BufferedResult() {
+		try {
+			this.logger = new PrintStream(logBuffer, true, ENCODING);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	PrintStream getLogger() {
+		return logger;
+	}
+
+	String getLog() {
+		logger.flush();
+		try {
+			return logBuffer.toString(ENCODING);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	boolean isFailed() {
+		return failure != null;
+	}
+
+	Result getFailure() {
+		return failure;
+	}
+
+	String getFailureMessage() {
+		return failureMessage;
+	}
+
+	/**
+	 * Marks the work as failed. The message is printed to the console
+	 * together with the rest of the output.
+	 */
+	void fail(Result result, String message) {
+		this.failure = result;
+		this.failureMessage = message;
+		logger.println(message);
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.ibm.g11n.pipeline.client.ServiceException;
+
+/**
+ * Shared snapshot of the bundle IDs in a Globalization Pipeline instance, so
+ * that builds and form validations do not list all bundles of the instance
+ * every time.
+ *
+ * <p>
+ * The snapshot is reloaded when it is older than {@link #TTL_MILLIS} or after
+ * {@link #invalidate()}. Bundles created by the build step are added to the
+ * snapshot directly. Concurrent readers of an expired snapshot wait for a
+ * single reload instead of each listing the bundles. Bundles created by others
+ * since the snapshot was loaded are missing from it, so a reader not finding
+ * a bundle should {@link #refresh} the snapshot unless it is recent.
+ */
+final class BundleIdIndex {
+
+	static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+	/**
+	 * Lists the bundle IDs from the service.
+	 */
+	interface Loader {
+		Set<String> load() throws ServiceException, InterruptedException;
+	}
+
+	// A lock rather than a monitor, since it is held during the service call and
+	// a virtual thread blocked inside a monitor keeps its carrier thread
+	private final ReentrantLock loadLock = new ReentrantLock();
+
+	// Replaced as a whole, never modified
+	private volatile Set<String> bundleIds;
+	private volatile long loadedAt;
+
+	/**
+	 * Returns the bundle IDs, loading them if the snapshot is missing or
+	 * expired.
+	 */
+	Set<String> get(Loader loader) throws ServiceException, InterruptedException {
+		Set<String> ids = bundleIds;
+		if (ids != null && !isExpired()) {
+			return ids;
+		}
+		loadLock.lockInterruptibly();
+		try {
+			// Another thread may have reloaded while this one was waiting
+			ids = bundleIds;
+			if (ids != null && !isExpired()) {
+				return ids;
+			}
+			return reload(loader);
+		} finally {
+			loadLock.unlock();
+		}
+	}
+
+	/**
+	 * Lists the bundle IDs from the service, regardless of the snapshot age.
+	 */
+	Set<String> refresh(Loader loader) throws ServiceException, InterruptedException {
+		loadLock.lockInterruptibly();
+		try {
+			return reload(loader);
+		} finally {
+			loadLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns true if the snapshot was listed from the service at or after
+	 * the given time.
+	 */
+	boolean isLoadedSince(long time) {
+		return bundleIds != null && loadedAt >= time;
+	}
+
+	/**
+	 * Records a bundle created through the build step.
+	 */
+	void added(String bundleId) {
+		loadLock.lock();
+		try {
+			Set<String> ids = bundleIds;
+			if (ids != null && !ids.contains(bundleId)) {
+				Set<String> newIds = new HashSet<String>(ids);
+				newIds.add(bundleId);
+				bundleIds = Collections.unmodifiableSet(newIds);
+			}
+		} finally {
+			loadLock.unlock();
+		}
+	}
+
+	/**
+	 * Discards the snapshot, so that the next reader lists the bundles again.
+	 */
+	void invalidate() {
+		bundleIds = null;
+	}
+
+	private boolean isExpired() {
+		return System.currentTimeMillis() - loadedAt >= TTL_MILLIS;
+	}
+
+	private Set<String> reload(Loader loader) throws ServiceException, InterruptedException {
+		Set<String> ids = Collections.unmodifiableSet(new HashSet<String>(loader.load()));
+		loadedAt = System.currentTimeMillis();
+		bundleIds = ids;
+		return ids;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import com.ibm.g11n.pipeline.client.BundleData;
+import com.ibm.g11n.pipeline.client.ServiceException;
+
+/**
+ * Per-build cache of {@link BundleData}, filled by a prefetch phase which
+ * fetches the bundle information of all bundles concurrently.
+ *
+ * <p>
+ * A bundle which is requested before its prefetch task has started is fetched
+ * by the requesting thread itself, so a consumer running on the same pool as
+ * the prefetch tasks never waits for a task queued behind it.
+ */
+final class BundleInfoCache {
+
+	private final ResilientServiceClient gpClient;
+	private final ConcurrentMap<String, FutureTask<BundleData>> entries =
+			new ConcurrentHashMap<String, FutureTask<BundleData>>();
+
+	BundleInfoCache(ResilientServiceClient gpClient) {
+		this.gpClient = gpClient;
+	}
+
+	/**
+	 * Schedules fetching the bundle information of the given bundles.
+	 *
+	 * @param executor the pool to fetch on, or null to fetch lazily on first use
+	 */
+	void prefetch(Collection<String> bundleIds, Executor executor) {
+		if (executor == null) {
+			return;
+		}
+		for (String bundleId : bundleIds) {
+			executor.execute(taskFor(bundleId));
+		}
+	}
+
+	/**
+	 * Returns the bundle information, waiting for the prefetch if it is in
+	 * progress.
+	 */
+	BundleData get(String bundleId) throws ServiceException, InterruptedException {
+		FutureTask<BundleData> task = taskFor(bundleId);
+		// No-op when the task has already been started by the prefetch
+		task.run();
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof ServiceException) {
+				throw (ServiceException) cause;
+			}
+			if (cause instanceof InterruptedException) {
+				throw (InterruptedException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new ServiceException("Failed to get bundle data for " + bundleId, cause);
+		}
+	}
+
+	private FutureTask<BundleData> taskFor(final String bundleId) {
+		FutureTask<BundleData> task = entries.get(bundleId);
+		if (task == null) {
+			FutureTask<BundleData> newTask = new FutureTask<BundleData>(() -> gpClient.getBundleInfo(bundleId));
+			task = entries.putIfAbsent(bundleId, newTask);
+			if (task == null) {
+				task = newTask;
+			}
+		}
+		return task;
+	}
+}
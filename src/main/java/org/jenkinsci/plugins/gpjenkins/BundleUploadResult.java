@@ -0,0 +1,89 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+/**
+ * Outcome of uploading all source files mapped to one bundle.
+ *
+ * <p>
+ * Console output produced while processing the bundle is kept in a buffer,
+ * so that results of bundles processed concurrently can be printed in the
+ * same order as the files were found in the workspace.
+ */
+final class BundleUploadResult extends BufferedResult {
+
+	private final String bundleId;
+
+	private boolean created;
+	private boolean skipped;
+	private int filesProcessed;
+	private int entriesUploaded;
+
+	private UploadManifest.BundleState state;
+
+	BundleUploadResult(String bundleId) {
+		this.bundleId = bundleId;
+	}
+
+	String getBundleId() {
+		return bundleId;
+	}
+
+	boolean isCreated() {
+		return created;
+	}
+
+	void setCreated(boolean created) {
+		this.created = created;
+	}
+
+	boolean isSkipped() {
+		return skipped;
+	}
+
+	void setSkipped(boolean skipped) {
+		this.skipped = skipped;
+	}
+
+	/**
+	 * Returns the source file state to record in the upload manifest, or null
+	 * if the bundle was not uploaded completely.
+	 */
+	UploadManifest.BundleState getState() {
+		return state;
+	}
+
+	void setState(UploadManifest.BundleState state) {
+		this.state = state;
+	}
+
+	int getFilesProcessed() {
+		return filesProcessed;
+	}
+
+	void addFileProcessed() {
+		filesProcessed++;
+	}
+
+	int getEntriesUploaded() {
+		return entriesUploaded;
+	}
+
+	void addEntriesUploaded(int count) {
+		entriesUploaded += count;
+	}
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.io.input.CountingInputStream;
+
+import com.ibm.g11n.pipeline.client.BundleData;
+import com.ibm.g11n.pipeline.client.NewBundleData;
+import com.ibm.g11n.pipeline.client.ResourceEntryData;
+import com.ibm.g11n.pipeline.client.ServiceException;
+import com.ibm.g11n.pipeline.resfilter.FilterOptions;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
+import com.ibm.g11n.pipeline.resfilter.ResourceString;
+
+import hudson.FilePath;
+import hudson.model.Result;
+
+/**
+ * Uploads the source files mapped to a single bundle ID: checks or creates
+ * the bundle, parses each file and uploads its resource entries.
+ *
+ * <p>
+ * Files sharing a bundle ID are always processed by the same task, one after
+ * another, so that concurrent tasks never race on creating the same bundle.
+ * If creating a bundle fails because it exists already, as when the bundle
+ * ID index is stale, the task updates the existing bundle instead.
+ *
+ * <p>
+ * When the incremental upload is enabled, the task records the digests of the
+ * source files and skips parsing and uploading if they match the state of the
+ * previous upload, without fetching the bundle information.
+ *
+ * <p>
+ * When the delta upload is enabled, the resource strings of an existing bundle
+ * are compared with the source language entries currently stored in the
+ * service, and only added or modified keys (and optionally removed keys) are
+ * sent through the partial update API.
+ *
+ * <p>
+ * Resource entries are sent in batches limited by the chunk size options, see
+ * {@link ResourceEntryBatcher}. An existing bundle whose entries do not fit
+ * in one request is updated with partial updates, followed by explicit
+ * deletes of the keys no longer in the source file; only the keys currently
+ * stored are kept in memory for that, not their values.
+ */
+final class BundleUploadTask implements Callable<BundleUploadResult> {
+
+	private final ResilientServiceClient gpClient;
+	private final BundleInfoCache bundleInfo;
+	private final String bundleId;
+	private final List<FilePath> files;
+	private final boolean bundleExists;
+	private final String type;
+	private final String srcLang;
+	private final Set<String> targetLanguages;
+	private final FilePath baseDirectory;
+	private final boolean incremental;
+	private final UploadManifest.BundleState previousState;
+	private final boolean deltaUpload;
+	private final boolean deleteRemovedKeys;
+	private final int chunkEntries;
+	private final long chunkBytes;
+	private final boolean onAgent;
+
+	BundleUploadTask(ResilientServiceClient gpClient, BundleInfoCache bundleInfo, String bundleId, List<FilePath> files,
+			boolean bundleExists, String type, String srcLang, Set<String> targetLanguages,
+			FilePath baseDirectory, boolean incremental, UploadManifest.BundleState previousState,
+			boolean deltaUpload, boolean deleteRemovedKeys, int chunkEntries, long chunkBytes, boolean onAgent) {
+		this.gpClient = gpClient;
+		this.bundleInfo = bundleInfo;
+		this.bundleId = bundleId;
+		this.files = files;
+		this.bundleExists = bundleExists;
+		this.type = type;
+		this.srcLang = srcLang;
+		this.targetLanguages = targetLanguages;
+		this.baseDirectory = baseDirectory;
+		this.incremental = incremental;
+		this.previousState = previousState;
+		this.deltaUpload = deltaUpload;
+		this.deleteRemovedKeys = deleteRemovedKeys;
+		this.chunkEntries = chunkEntries;
+		this.chunkBytes = chunkBytes;
+		this.onAgent = onAgent;
+	}
+
+	@Override
+	public BundleUploadResult call() throws IOException, InterruptedException {
+		BundleUploadResult result = new BundleUploadResult(bundleId);
+		PrintStream logger = result.getLogger();
+		try {
+			boolean createNew = false;
+			if (bundleExists) {
+				logger.println("Found Bundle: " + bundleId);
+			} else {
+				logger.println("bundle:" + bundleId + " does not exist, creating a new bundle.");
+				createNew = true;
+			}
+
+			// Compared before anything is fetched, an unchanged bundle costs no service call
+			UploadManifest.BundleState currentState = null;
+			if (incremental) {
+				currentState = new UploadManifest.BundleState(targetLanguages);
+				for (FilePath bf : files) {
+					currentState.putFile(GlobalizationPipelineRunner.relativePath(baseDirectory, bf), bf.digest());
+				}
+				if (bundleExists && currentState.equals(previousState)) {
+					logger.println("Bundle: " + bundleId + " is unchanged since the last upload - skipping");
+					result.setSkipped(true);
+					result.setState(currentState);
+					return result;
+				}
+			}
+
+			// Checks if the source language matches.
+			if (bundleExists && !checkSourceLanguage(bundleInfo.get(bundleId), result)) {
+				return result;
+			}
+
+			StepMetrics metrics = gpClient.getMetrics();
+			long filterStart = System.nanoTime();
+			ResourceFilter filter = GlobalizationPipelineRunner.loadResourceFilter(type, onAgent);
+			metrics.record(StepMetrics.Phase.FILTER_LOADING, System.nanoTime() - filterStart, 0, 1);
+			if (filter == null) {
+				throw new IOException("Resource filter for " + type + " is not available.");
+			}
+
+			boolean readFailed = false;
+			for (FilePath bf : files) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				Collection<ResourceString> resStrings;
+				// A bundle created for this file has no entries to compare with
+				boolean compareEntries = deltaUpload && !createNew;
+				boolean createdForFile = createNew;
+
+				try (CountingInputStream fis = new CountingInputStream(bf.read())) {
+					long parseStart = System.nanoTime();
+					LanguageBundle resBundle = filter.parse(fis, new FilterOptions(Locale.forLanguageTag(srcLang)));
+					metrics.record(StepMetrics.Phase.PARSE, bundleId, srcLang, System.nanoTime() - parseStart,
+							fis.getByteCount(), resBundle.getResourceStrings().size());
+
+					if (createNew) {
+						NewBundleData newBundleData = new NewBundleData(srcLang);
+						// set target languages
+						if (!targetLanguages.isEmpty()) {
+							newBundleData.setTargetLanguages(new TreeSet<String>(targetLanguages));
+						}
+						// set bundle notes
+						newBundleData.setNotes(resBundle.getNotes());
+						newBundleData.setMetadata(resBundle.getMetadata());
+						BundleData existing = createOrFindBundle(newBundleData);
+						if (existing == null) {
+							logger.println("Created bundle: " + bundleId);
+							result.setCreated(true);
+						} else {
+							// The bundle ID index was stale, or another build created the bundle meanwhile
+							logger.println("Found Bundle: " + bundleId + " created since the bundle list was loaded");
+							if (!checkSourceLanguage(existing, result)) {
+								return result;
+							}
+							compareEntries = deltaUpload;
+							createdForFile = false;
+						}
+						createNew = false;
+					}
+					resStrings = resBundle.getResourceStrings();
+				} catch (IOException e) {
+					logger.println("Failed to read the resoruce data from "
+							+ bf.toURI().getPath() + ": " + e.getMessage());
+					readFailed = true;
+					result.addFileProcessed();
+					continue;
+				} catch (ResourceFilterException e) {
+					throw new IOException("Failed to parse the resource data from "
+							+ bf.toURI().getPath() + ": " + e.getMessage(), e);
+				}
+
+				if (resStrings.isEmpty()) {
+					logger.println("No resource entries in " + bf.toURI().getPath());
+				} else if (compareEntries) {
+					ResourceEntryBatcher batcher = new ResourceEntryBatcher(gpClient, bundleId, srcLang, false,
+							chunkEntries, chunkBytes);
+					sendChanges(resStrings, gpClient.getResourceEntries(bundleId, srcLang), batcher);
+					if (batcher.getRequests() == 0) {
+						logger.println("Source language(" + srcLang + ") resource entries in bundle: "
+								+ bundleId + " are up to date");
+					} else {
+						// Only the modified resource entries were sent
+						logger.println("Updated source language(" + srcLang + ") resource entries(added/modified: "
+								+ batcher.getEntriesSent() + ", deleted: " + batcher.getEntriesDeleted()
+								+ ") in bundle: " + bundleId + requestsOf(batcher));
+						result.addEntriesUploaded(batcher.getEntriesSent());
+					}
+				} else if (createdForFile
+						|| ResourceEntryBatcher.fitsInOneRequest(resStrings, chunkEntries, chunkBytes)) {
+					// Upload the resource entries, replacing the current ones in one request
+					ResourceEntryBatcher batcher = new ResourceEntryBatcher(gpClient, bundleId, srcLang, true,
+							chunkEntries, chunkBytes);
+					for (ResourceString resString : resStrings) {
+						batcher.add(resString);
+					}
+					batcher.finish();
+					logger.println("Uploaded source language(" + srcLang
+							+ ") resource entries(" + batcher.getEntriesSent() + ") to bundle: " + bundleId
+							+ requestsOf(batcher));
+					result.addEntriesUploaded(batcher.getEntriesSent());
+				} else {
+					// A replacing upload per chunk would delete the keys of the other chunks with
+					// their translations, so all chunks are merged and removed keys deleted after
+					Set<String> removedKeys = gpClient.getResourceKeys(bundleId, srcLang);
+					ResourceEntryBatcher batcher = new ResourceEntryBatcher(gpClient, bundleId, srcLang, false,
+							chunkEntries, chunkBytes);
+					for (ResourceString resString : resStrings) {
+						removedKeys.remove(resString.getKey());
+						batcher.add(resString);
+					}
+					batcher.finish();
+					for (String key : removedKeys) {
+						batcher.delete(key);
+					}
+					batcher.finish();
+					logger.println("Uploaded source language(" + srcLang
+							+ ") resource entries(" + batcher.getEntriesSent() + ") to bundle: " + bundleId
+							+ requestsOf(batcher));
+					result.addEntriesUploaded(batcher.getEntriesSent());
+				}
+				result.addFileProcessed();
+			}
+			if (!readFailed) {
+				result.setState(currentState);
+			}
+		} catch (ServiceException | NullPointerException e) {
+			result.fail(Result.UNSTABLE, "Globalization Pipeline exception : " + e.getMessage());
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the bundle. If that fails because the bundle exists already,
+	 * returns its information, so that the upload continues as for an
+	 * existing bundle.
+	 *
+	 * @return null if the bundle was created
+	 */
+	private BundleData createOrFindBundle(NewBundleData newBundleData) throws ServiceException, InterruptedException {
+		try {
+			gpClient.createBundle(bundleId, newBundleData);
+			return null;
+		} catch (ServiceException e) {
+			BundleData existing;
+			try {
+				existing = gpClient.getBundleInfo(bundleId);
+			} catch (ServiceException notFound) {
+				throw e;
+			}
+			if (existing == null) {
+				throw e;
+			}
+			return existing;
+		}
+	}
+
+	private boolean checkSourceLanguage(BundleData bundle, BundleUploadResult result) {
+		if (!srcLang.equals(bundle.getSourceLanguage())) {
+			result.fail(Result.FAILURE, "The source language in bundle:"
+					+ bundleId + "(" + bundle.getSourceLanguage()
+					+ ") does not match the specified language("
+					+ srcLang + ").");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Compares the parsed resource strings with the source language entries
+	 * currently stored in the bundle, and sends added or modified keys. When
+	 * deletion is enabled, keys which are no longer in the source file are
+	 * removed from the bundle.
+	 */
+	private void sendChanges(Collection<ResourceString> resStrings, Map<String, ResourceEntryData> currentEntries,
+			ResourceEntryBatcher batcher) throws ServiceException, InterruptedException {
+		if (currentEntries == null) {
+			currentEntries = Collections.emptyMap();
+		}
+		Set<String> keys = new HashSet<>();
+		for (ResourceString resString : resStrings) {
+			String key = resString.getKey();
+			keys.add(key);
+			Integer seqNum = resString.getSequenceNumber() >= 0 ? Integer.valueOf(resString.getSequenceNumber()) : null;
+
+			ResourceEntryData current = currentEntries.get(key);
+			if (current != null
+					&& Objects.equals(resString.getValue(), current.getValue())
+					// the service assigns a sequence number when the source has none
+					&& (seqNum == null || seqNum.equals(current.getSequenceNumber()))
+					&& notesOf(resString.getNotes()).equals(notesOf(current.getNotes()))
+					&& metadataOf(resString.getMetadata()).equals(metadataOf(current.getMetadata()))) {
+				continue;
+			}
+			batcher.add(resString);
+		}
+		if (deleteRemovedKeys) {
+			for (String key : currentEntries.keySet()) {
+				if (!keys.contains(key)) {
+					batcher.delete(key);
+				}
+			}
+		}
+		batcher.finish();
+	}
+
+	private static String requestsOf(ResourceEntryBatcher batcher) {
+		return batcher.getRequests() > 1 ? " in " + batcher.getRequests() + " requests" : "";
+	}
+
+	private static List<String> notesOf(List<String> notes) {
+		return notes == null ? Collections.<String>emptyList() : notes;
+	}
+
+	private static Map<String, String> metadataOf(Map<String, String> metadata) {
+		return metadata == null ? Collections.<String, String>emptyMap() : metadata;
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import com.ibm.g11n.pipeline.client.ServiceAccount;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
+
+import hudson.Util;
+
+/**
+ * Credential checks of the configuration page, cached per set of credentials.
+ *
+ * <p>
+ * The page validates the credentials as the user types, and several users
+ * may edit jobs using the same instance. A verdict, positive or negative, is
+ * reused for {@link #TTL_MILLIS}, and concurrent checks of the same
+ * credentials wait for a single call to the service. The age of the verdict
+ * is shown with it.
+ *
+ * <p>
+ * Credentials without a client in the {@link ServiceClientRegistry} are
+ * checked with a throwaway client, and only registered once the check
+ * succeeds, so that values typed in the form do not evict the clients used
+ * by builds.
+ */
+final class CredentialCheck {
+
+	static final long TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+	/** Maximum number of verdicts kept; the least recently used one is dropped first */
+	static final int MAX_VERDICTS = 64;
+
+	private static final Map<ServiceClientRegistry.Key, FutureTask<Verdict>> VERDICTS =
+			new LinkedHashMap<ServiceClientRegistry.Key, FutureTask<Verdict>>(16, 0.75f, true);
+
+	private CredentialCheck() {
+	}
+
+	/**
+	 * Outcome of a credential check, and when the service was called.
+	 */
+	static final class Verdict {
+
+		private final boolean valid;
+		private final String message;
+		private final long checkedAt;
+
+		Verdict(boolean valid, String message, long checkedAt) {
+			this.valid = valid;
+			this.message = message;
+			this.checkedAt = checkedAt;
+		}
+
+		boolean isValid() {
+			return valid;
+		}
+
+		/**
+		 * Returns the error message of the service, or null.
+		 */
+		String getMessage() {
+			return message;
+		}
+
+		long getAgeMillis() {
+			return System.currentTimeMillis() - checkedAt;
+		}
+
+		/**
+		 * Returns a description of the age for display, such as
+		 * " (checked 12 sec ago)", or an empty string for a fresh verdict.
+		 */
+		String describeAge() {
+			long age = getAgeMillis();
+			return age < 1000 ? "" : " (checked " + Util.getTimeSpanString(age) + " ago)";
+		}
+	}
+
+	/**
+	 * Checks the credentials by listing the bundles, unless a verdict younger
+	 * than {@link #TTL_MILLIS} exists.
+	 *
+	 * @param force whether to ignore a successful credential check of a build,
+	 *            which is valid for {@link ServiceClientRegistry#VALIDATION_TTL_MILLIS},
+	 *            and any verdict already given; only a check still running is
+	 *            shared
+	 */
+	static Verdict check(final String url, final String instanceId, final String userId, final String password,
+			boolean force) throws InterruptedException {
+		ServiceClientRegistry.Registration registration = ServiceClientRegistry.find(url, instanceId, userId,
+				password);
+		if (!force && registration != null && registration.isValidated()) {
+			return new Verdict(true, null, registration.getValidatedAt());
+		}
+
+		ServiceClientRegistry.Key key = new ServiceClientRegistry.Key(url, instanceId, userId, password);
+		FutureTask<Verdict> task;
+		synchronized (VERDICTS) {
+			task = VERDICTS.get(key);
+			if (task == null || (force && task.isDone()) || isExpired(task)) {
+				task = new FutureTask<Verdict>(() -> {
+					long checkedAt = System.currentTimeMillis();
+					try {
+						ServiceClientRegistry.Registration current = ServiceClientRegistry.find(url, instanceId,
+								userId, password);
+						if (current == null) {
+							ServiceClient client = ServiceClient.getInstance(
+									ServiceAccount.getInstance(url, instanceId, userId, password));
+							Set<String> bundleIds = client.getBundleIds();
+							current = ServiceClientRegistry.get(url, instanceId, userId, password);
+							// Fills the bundle index with the listing already made
+							current.verify(() -> bundleIds, true);
+						} else {
+							// Also refreshes the shared bundle index
+							current.verify(current.getClient()::getBundleIds, true);
+						}
+						return new Verdict(true, null, checkedAt);
+					} catch (ServiceException e) {
+						return new Verdict(false, e.getMessage(), checkedAt);
+					}
+				});
+				VERDICTS.put(key, task);
+				if (VERDICTS.size() > MAX_VERDICTS) {
+					Iterator<ServiceClientRegistry.Key> eldest = VERDICTS.keySet().iterator();
+					eldest.next();
+					eldest.remove();
+				}
+			}
+		}
+		// No-op when another request is already running the check
+		task.run();
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			// Not a verdict on the credentials, the next request checks again
+			synchronized (VERDICTS) {
+				if (VERDICTS.get(key) == task) {
+					VERDICTS.remove(key);
+				}
+			}
+			Throwable cause = e.getCause();
+			if (cause instanceof InterruptedException) {
+				throw (InterruptedException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	private static boolean isExpired(FutureTask<Verdict> task) {
+		if (!task.isDone()) {
+			return false;
+		}
+		try {
+			return task.get().getAgeMillis() >= TTL_MILLIS;
+		} catch (InterruptedException | ExecutionException e) {
+			return true;
+		}
+	}
+}
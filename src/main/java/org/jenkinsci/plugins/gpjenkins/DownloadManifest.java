@@ -0,0 +1,133 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Freshness markers of the files exported by the previous builds of a job,
+ * used by the incremental download to skip bundle languages which have not
+ * changed in the service since they were last written. Only exports whose
+ * translation was complete are recorded, since completing a translation does
+ * not necessarily update the bundle.
+ */
+final class DownloadManifest extends JobManifest {
+
+	private static final long serialVersionUID = 1L;
+
+	static final String PREFIX = "download-manifest";
+
+	/**
+	 * What an output file was exported from.
+	 */
+	static final class ExportState implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		/** Last update time of the bundle reported by the service */
+		private final long bundleUpdatedAt;
+		/** Digest of the source file, which is the base of merged output */
+		private final String sourceDigest;
+		/** Digest of the export settings affecting the content */
+		private final String settings;
+		private final String outputPath;
+		private final String outputDigest;
+		/**
+		 * Whether all exported values were final. Exports with untranslated or
+		 * fallback values are not recorded; states of earlier releases, which
+		 * lack the field, are not trusted.
+		 */
+		private final boolean translationComplete;
+
+		ExportState(long bundleUpdatedAt, String sourceDigest, String settings, String outputPath,
+				String outputDigest, boolean translationComplete) {
+			this.bundleUpdatedAt = bundleUpdatedAt;
+			this.sourceDigest = sourceDigest;
+			this.settings = settings;
+			this.outputPath = outputPath;
+			this.outputDigest = outputDigest;
+			this.translationComplete = translationComplete;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ExportState)) {
+				return false;
+			}
+			ExportState other = (ExportState) obj;
+			return bundleUpdatedAt == other.bundleUpdatedAt
+					&& translationComplete == other.translationComplete
+					&& Objects.equals(sourceDigest, other.sourceDigest)
+					&& Objects.equals(settings, other.settings)
+					&& Objects.equals(outputPath, other.outputPath)
+					&& Objects.equals(outputDigest, other.outputDigest);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(bundleUpdatedAt, sourceDigest, settings, outputPath, outputDigest, translationComplete);
+		}
+	}
+
+	/** Bundle ID to language to export state */
+	private Map<String, Map<String, ExportState>> bundles = new TreeMap<String, Map<String, ExportState>>();
+
+	@Override
+	boolean isValid() {
+		return bundles != null;
+	}
+
+	synchronized ExportState get(String bundleId, String language) {
+		Map<String, ExportState> languages = bundles.get(bundleId);
+		return languages == null ? null : languages.get(language);
+	}
+
+	synchronized void put(String bundleId, String language, ExportState state) {
+		Map<String, ExportState> languages = bundles.get(bundleId);
+		if (languages == null) {
+			languages = new TreeMap<String, ExportState>();
+			bundles.put(bundleId, languages);
+		}
+		languages.put(language, state);
+	}
+
+	synchronized void remove(String bundleId, String language) {
+		Map<String, ExportState> languages = bundles.get(bundleId);
+		if (languages != null) {
+			languages.remove(language);
+			if (languages.isEmpty()) {
+				bundles.remove(bundleId);
+			}
+		}
+	}
+
+	/**
+	 * Forgets bundles which are no longer part of the source file set.
+	 */
+	synchronized void retainAll(Set<String> bundleIds) {
+		for (Iterator<String> it = bundles.keySet().iterator(); it.hasNext();) {
+			if (!bundleIds.contains(it.next())) {
+				it.remove();
+			}
+		}
+	}
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import com.google.gson.JsonArray;
+
+import hudson.model.Api;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import jenkins.model.RunAction2;
+
+/**
+ * Metrics of the Globalization Pipeline build steps of a build, shown on the
+ * build page and exported through the remote API of the build. They are also
+ * written to {@link #JSON_FILE} in the build directory, and the metrics of
+ * the last build of each job are served by {@link GlobalizationPipelineMetrics}.
+ *
+ * <p>
+ * The build page also shows the most expensive bundle languages, and how
+ * their cost evolved over the previous builds.
+ */
+@ExportedBean
+public final class GlobalizationPipelineAction implements RunAction2 {
+
+	static final String JSON_FILE = "gp-metrics.json";
+
+	/** Maximum number of builds in the trend of the most expensive bundles */
+	static final int TREND_BUILDS = 10;
+	/** Number of bundle languages in the trend */
+	static final int TREND_BUNDLES = 10;
+
+	private final List<StepMetrics> steps = new ArrayList<StepMetrics>();
+	private transient Run<?, ?> run;
+
+	@Override
+	public String getIconFileName() {
+		return "clock.png";
+	}
+
+	@Override
+	public String getDisplayName() {
+		return "Globalization Pipeline Metrics";
+	}
+
+	@Override
+	public String getUrlName() {
+		return "gp-metrics";
+	}
+
+	@Override
+	public void onAttached(Run<?, ?> run) {
+		this.run = run;
+	}
+
+	@Override
+	public void onLoad(Run<?, ?> run) {
+		this.run = run;
+	}
+
+	public Run<?, ?> getRun() {
+		return run;
+	}
+
+	/**
+	 * Serves the metrics at {@code gp-metrics/api/json}.
+	 */
+	public Api getApi() {
+		return new Api(this);
+	}
+
+	/**
+	 * Returns the metrics of each Globalization Pipeline step of the build,
+	 * in execution order.
+	 */
+	@Exported(inline = true)
+	public synchronized List<StepMetrics> getSteps() {
+		return new ArrayList<StepMetrics>(steps);
+	}
+
+	/**
+	 * Returns this build and the previous builds with metrics, most recent
+	 * first.
+	 */
+	public List<Run<?, ?>> getTrendBuilds() {
+		List<Run<?, ?>> builds = new ArrayList<Run<?, ?>>();
+		if (run == null) {
+			return builds;
+		}
+		builds.add(run);
+		// Builds without the step are skipped, but only a bounded number is loaded
+		Run<?, ?> previous = run.getPreviousBuild();
+		for (int i = 0; previous != null && i < TREND_BUILDS * 2 && builds.size() < TREND_BUILDS; i++) {
+			if (previous.getAction(GlobalizationPipelineAction.class) != null) {
+				builds.add(previous);
+			}
+			previous = previous.getPreviousBuild();
+		}
+		return builds;
+	}
+
+	/**
+	 * Returns the cost of the {@link #TREND_BUNDLES} most expensive bundle
+	 * languages of this build in each build of {@link #getTrendBuilds()}.
+	 */
+	public List<BundleTrend> getBundleTrend() {
+		List<Run<?, ?>> builds = getTrendBuilds();
+		List<Map<String, Double>> totals = new ArrayList<Map<String, Double>>();
+		for (Run<?, ?> build : builds) {
+			totals.add(build.getAction(GlobalizationPipelineAction.class).getTotals());
+		}
+		Map<String, BundleTrend> trends = new LinkedHashMap<String, BundleTrend>();
+		for (StepMetrics step : getSteps()) {
+			for (StepMetrics.BundleCost cost : step.getSlowestBundles()) {
+				String key = keyOf(step, cost);
+				if (!trends.containsKey(key)) {
+					trends.put(key, new BundleTrend(step.getGoal(), cost.getBundleId(), cost.getLanguage(),
+							totals.get(0).get(key)));
+				}
+			}
+		}
+		List<BundleTrend> top = new ArrayList<BundleTrend>(trends.values());
+		top.sort((a, b) -> Double.compare(b.total, a.total));
+		top = top.subList(0, Math.min(TREND_BUNDLES, top.size()));
+		for (BundleTrend trend : top) {
+			for (Map<String, Double> buildTotals : totals) {
+				Double total = buildTotals.get(trend.key);
+				trend.totals.add(total == null ? "-" : String.format(Locale.ROOT, "%.1f", total));
+			}
+		}
+		return top;
+	}
+
+	/**
+	 * Returns the total cost in milliseconds of the bundle languages kept by
+	 * the steps of the build, summed over steps with the same goal.
+	 */
+	private Map<String, Double> getTotals() {
+		Map<String, Double> totals = new HashMap<String, Double>();
+		for (StepMetrics step : getSteps()) {
+			for (StepMetrics.BundleCost cost : step.getSlowestBundles()) {
+				totals.merge(keyOf(step, cost), cost.getTotalMillis(), Double::sum);
+			}
+		}
+		return totals;
+	}
+
+	private static String keyOf(StepMetrics step, StepMetrics.BundleCost cost) {
+		return step.getGoal() + '\n' + cost.getBundleId() + '\n' + cost.getLanguage();
+	}
+
+	/**
+	 * Cost of one bundle language in the builds of the trend.
+	 */
+	public static final class BundleTrend {
+
+		private final String key;
+		private final String goal;
+		private final String bundleId;
+		private final String language;
+		private final double total;
+		private final List<String> totals = new ArrayList<String>();
+
+		BundleTrend(String goal, String bundleId, String language, double total) {
+			this.key = goal + '\n' + bundleId + '\n' + language;
+			this.goal = goal;
+			this.bundleId = bundleId;
+			this.language = language;
+			this.total = total;
+		}
+
+		public String getGoal() {
+			return goal;
+		}
+
+		public String getBundleId() {
+			return bundleId;
+		}
+
+		public String getLanguage() {
+			return language;
+		}
+
+		/**
+		 * Returns the total cost in milliseconds in each build of the trend,
+		 * or "-" where the bundle language was not among the most expensive.
+		 */
+		public List<String> getTotals() {
+			return Collections.unmodifiableList(totals);
+		}
+	}
+
+	private synchronized void add(StepMetrics metrics) {
+		steps.add(metrics);
+	}
+
+	/**
+	 * Adds the metrics of a step to the build and publishes them.
+	 */
+	static void record(Run<?, ?> build, StepMetrics metrics, TaskListener listener) {
+		GlobalizationPipelineAction action;
+		synchronized (build) {
+			action = build.getAction(GlobalizationPipelineAction.class);
+			if (action == null) {
+				action = new GlobalizationPipelineAction();
+				build.addAction(action);
+			}
+		}
+		action.add(metrics);
+		List<StepMetrics> steps = action.getSteps();
+		JsonArray json = new JsonArray();
+		for (StepMetrics step : steps) {
+			json.add(step.toJson());
+		}
+		File file = new File(build.getRootDir(), JSON_FILE);
+		try {
+			Files.write(file.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			listener.getLogger().println("Failed to save the step metrics : " + e.getMessage());
+		}
+		GlobalizationPipelineMetrics.update(build, steps);
+	}
+}
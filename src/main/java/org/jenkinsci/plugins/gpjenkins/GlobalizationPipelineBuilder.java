@@ -17,25 +17,20 @@
 package org.jenkinsci.plugins.gpjenkins;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.ServiceLoader;
-import java.util.Set;
-import java.util.TreeSet;
 
 import javax.servlet.ServletException;
 
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 
@@ -44,22 +39,7 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
-import com.ibm.g11n.pipeline.client.BundleData;
-import com.ibm.g11n.pipeline.client.NewBundleData;
-import com.ibm.g11n.pipeline.client.NewResourceEntryData;
-import com.ibm.g11n.pipeline.client.ResourceEntryData;
-import com.ibm.g11n.pipeline.client.ServiceAccount;
-import com.ibm.g11n.pipeline.client.ServiceClient;
 import com.ibm.g11n.pipeline.client.ServiceException;
-import com.ibm.g11n.pipeline.resfilter.FilterOptions;
-import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
-import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
-import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
-import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
-import com.ibm.g11n.pipeline.resfilter.ResourceFilterFactory;
-import com.ibm.g11n.pipeline.resfilter.ResourceString;
-import com.ibm.g11n.pipeline.resfilter.csv.CSVFilter;
-import com.ibm.g11n.pipeline.resfilter.impl.DefaultResourceFilterProvider;
 
 import hudson.Extension;
 import hudson.FilePath;
@@ -93,7 +73,10 @@ import net.sf.json.JSONObject;
  *
  * @author Parth Gaglani
  */
-public class GlobalizationPipelineBuilder extends Builder implements SimpleBuildStep {
+public class GlobalizationPipelineBuilder extends Builder implements SimpleBuildStep, Serializable {
+
+	// Held by the execution of the Pipeline step, which is saved with the Pipeline
+	private static final long serialVersionUID = 1L;
 
 
 	private String instanceId;
@@ -113,8 +96,29 @@ public class GlobalizationPipelineBuilder extends Builder implements SimpleBuild
 	private String bundleLayout;
 	private String outDir;
 	private Boolean overwrite;
+	private Integer threadPoolSize;
+	private Boolean incrementalUpload;
+	private Boolean deltaUpload;
+	private Boolean deleteRemovedKeys;
+	private Boolean runOnAgent;
+	private Integer uploadChunkSize;
+	private Integer uploadChunkKilobytes;
+	private Integer maxRetries;
+	private Boolean incrementalDownload;
+	private Boolean writeIfChanged;
+	private Boolean batchOutput;
+	private Boolean virtualThreads;
+	private Boolean cacheTranslations;
+	private List<ResourceSet> resourceSets;
 
+	/**
+	 * Upper bound of {@link #threadPoolSize}, to protect both the Jenkins
+	 * controller and the Globalization Pipeline instance from misconfiguration.
+	 */
+	static final int MAX_THREAD_POOL_SIZE = 64;
 
+	/** Upper bound of {@link #maxRetries} */
+	static final int MAX_RETRIES = 10;
 
 
 	// Fields in config.jelly must match the parameter names in the "DataBoundConstructor"
@@ -283,317 +287,259 @@ public class GlobalizationPipelineBuilder extends Builder implements SimpleBuild
 		this.overwrite = overwrite;
 	}
 
-	public String computeParentFromBaseDir(FilePath filepath) throws IOException, InterruptedException{
-		String parent = "";
-		if(filepath.getParent() != null){
-			parent = filepath.getParent().toURI().getPath();
-			parent = parent.substring(parent.lastIndexOf(getBaseDir()), parent.length());
-			parent = parent.replaceAll(getBaseDir() + "/", "");
-		}
-		return parent;
+	public Integer getThreadPoolSize() {
+		return threadPoolSize;
 	}
 
-	public String printFilesConsidered(FilePath[] filePaths) throws IOException, InterruptedException{
-		String filesConsidered = "";
-		StringBuffer filesConsideredBuffer = new StringBuffer(filesConsidered);
-		for(FilePath filePath : filePaths){
-			filesConsideredBuffer.append(computeParentFromBaseDir(filePath) + filePath.getName() + '\n');
-		}
-		filesConsidered = filesConsideredBuffer.toString();
-		return filesConsidered;
+	@DataBoundSetter
+	public void setThreadPoolSize(Integer threadPoolSize) {
+		this.threadPoolSize = threadPoolSize;
 	}
 
-	private String pathToBundleId(String type, FilePath path) throws IOException, InterruptedException {
+	public Boolean getIncrementalUpload() {
+		return incrementalUpload;
+	}
 
-		FilePath parent = path.getParent();
-		String pkgName = "";
-		if(DefaultResourceFilterProvider.isJavaType(type)){
-			pkgName = parent == null ? "" :
-				computeParentFromBaseDir(path).replace('/', '.');
-		}
-		else{
-			pkgName = parent == null ? "" :
-				computeParentFromBaseDir(path).replace('/', '-');
-		}
-		String fileName = path.getName().replaceAll(" ", "_");
-		if (DefaultResourceFilterProvider.isJavaType(type)) {
-			int dotIdx = fileName.indexOf('.');
-			if (dotIdx >= 0) {
-				fileName = fileName.substring(0, dotIdx);
-			}
-			if(pkgName.equals("")){
-				return fileName;
-			}
-			return pkgName + fileName;
-		}
+	@DataBoundSetter
+	public void setIncrementalUpload(Boolean incrementalUpload) {
+		this.incrementalUpload = incrementalUpload;
+	}
 
-		return pkgName + fileName;
+	boolean isIncrementalUpload() {
+		return incrementalUpload != null && incrementalUpload.booleanValue();
 	}
 
-	private String getResourceType(String type){
-		return type.toUpperCase();
+	public Boolean getDeltaUpload() {
+		return deltaUpload;
 	}
 
+	@DataBoundSetter
+	public void setDeltaUpload(Boolean deltaUpload) {
+		this.deltaUpload = deltaUpload;
+	}
 
-	private String getLanguageId(String gpLanguageTag, String langIdStyle,
-			Map<String, String> langMappingMap) {
-		String languageId = gpLanguageTag;
-		if (langMappingMap != null) {
-			String mappedId = langMappingMap.get(gpLanguageTag);
-			if (mappedId != null) {
-				languageId = mappedId;
-			}
-		}
-		switch (langIdStyle) {
-		case "bcp47_underscore":
-			languageId = languageId.replace('-', '_');
-			break;
-		case "bcp47":
-			// do nothing
-			break;
-		default:
-			languageId = languageId.replace('-', '_');
-			break;
-		}
-		return languageId;
+	boolean isDeltaUpload() {
+		return deltaUpload != null && deltaUpload.booleanValue();
 	}
 
-	private String getEmbeddedLanguageId(String gpLanguageTag, Map<String, String> langMap) {
-		String languageId = gpLanguageTag;
-		if (langMap != null) {
-			String mappedId = langMap.get(gpLanguageTag);
-			if (mappedId != null) {
-				languageId = mappedId;
-			}
-		}
-		return languageId;
+	public Boolean getDeleteRemovedKeys() {
+		return deleteRemovedKeys;
 	}
 
+	@DataBoundSetter
+	public void setDeleteRemovedKeys(Boolean deleteRemovedKeys) {
+		this.deleteRemovedKeys = deleteRemovedKeys;
+	}
 
-	private void mergeTranslation(LanguageBundle bundle, String language, String type,
-			FilePath srcFile, FilePath outFile) throws InterruptedException, IOException {
-		ResourceFilter filter = ResourceFilterFactory.getResourceFilter(type);
-		try (OutputStream fos = outFile.write();
-				InputStream fis = srcFile.read()) {
-			filter.merge(fis, fos, bundle, new FilterOptions(Locale.forLanguageTag(language)));
-		} catch (IOException e) {
-			throw new IOException("I/O error while merging the translated strings to " + outFile.getName(), e);
-		} catch (ResourceFilterException e) {
-			throw new IOException("Resource filter error while merging the translated strings to " + outFile.getName(), e);
-		}
+	boolean isDeleteRemovedKeys() {
+		return deleteRemovedKeys != null && deleteRemovedKeys.booleanValue();
 	}
 
-	private void exportTranslation(LanguageBundle bundle, String language, String type,
-			FilePath outFile) throws IOException, InterruptedException {
-		ResourceFilter filter = ResourceFilterFactory.getResourceFilter(type);
-		try (OutputStream fos = outFile.write()) {
-			filter.write(fos, bundle, new FilterOptions(Locale.forLanguageTag(language)));
-		} catch (IOException e) {
-            throw new IOException("I/O error while writing the translated strings to "
-                    + outFile.getName(), e);
-        } catch (ResourceFilterException e) {
-            throw new IOException("Resource filter error while writing the translated strings to "
-                    + outFile.getName(), e);
-        }
+	public Boolean getRunOnAgent() {
+		return runOnAgent;
 	}
 
-	private LanguageBundle getBundle(ServiceClient client, String bundleId, String language, String embeddedLanguageId,
-			boolean reviewedOnly, boolean withFallback) throws ServiceException {
-		try {
-			LanguageBundleBuilder bundleBuilder = new LanguageBundleBuilder(false);
-			bundleBuilder.embeddedLanguageCode(embeddedLanguageId);
-			Map<String, ResourceEntryData> resEntries = client.getResourceEntries(bundleId, language);
-			for (Entry<String, ResourceEntryData> entry : resEntries.entrySet()) {
-				String key = entry.getKey();
-				ResourceEntryData data = entry.getValue();
-				String resVal = data.getValue();
-				String srcVal = data.getSourceValue();
-				Integer seqNum = data.getSequenceNumber();
-				List<String> notes = data.getNotes();
-				Map<String, String> metadata = data.getMetadata();
-
-				if (reviewedOnly) {
-					if (!data.isReviewed()) {
-						resVal = null;
-					}
-				}
+	@DataBoundSetter
+	public void setRunOnAgent(Boolean runOnAgent) {
+		this.runOnAgent = runOnAgent;
+	}
 
-				if (resVal == null && withFallback) {
-					resVal = data.getSourceValue();
-				}
+	boolean isRunOnAgent() {
+		return runOnAgent != null && runOnAgent.booleanValue();
+	}
 
-				if (resVal != null) {
-					ResourceString.Builder resb = ResourceString.with(key, resVal).sourceValue(srcVal);
-					if (seqNum != null) {
-						resb.sequenceNumber(seqNum.intValue());
-					}
-					if (notes != null) {
-						resb.notes(notes);
-					}
-					if (metadata != null) {
-                        resb.metadata(metadata);
-                    }
-					bundleBuilder.addResourceString(resb);
-				}
-			}
-			return bundleBuilder.build();
-		} catch (ServiceException e) {
-			throw new ServiceException("Globalization Pipeline service error", e);
-		}
+	public Integer getUploadChunkSize() {
+		return uploadChunkSize;
 	}
 
-	private void exportLanguageResource(ServiceClient client, FilePath bf, String language,
-			FilePath outBaseDir, String outContntOpt, String bundleLayout,
-			String langIdStyle, String srcLang, Map<String, String> langMap, TaskListener listener) throws ServiceException, IOException, InterruptedException
-	{
-		String srcFileName = bf.getName();
-		String relPath = computeParentFromBaseDir(bf);
-		FilePath outputFile = null;
-
-		switch (bundleLayout) {
-		case "lang_suffix": {
-			FilePath dir = new FilePath(outBaseDir, relPath);
-			String tgtName = srcFileName;
-			// Compose file name if the output language is not the source language
-			if (!language.equals(srcLang)) {
-				String baseName = srcFileName;
-				String extension = "";
-				int extensionIndex = srcFileName.lastIndexOf('.');
-				if (extensionIndex > 0) {
-					baseName = srcFileName.substring(0, extensionIndex);
-					extension = srcFileName.substring(extensionIndex);
-				}
+	@DataBoundSetter
+	public void setUploadChunkSize(Integer uploadChunkSize) {
+		this.uploadChunkSize = uploadChunkSize;
+	}
 
-				// checks if the source file's base name (without extension) ends with
-				// source language code suffix, e.g. foo_en => foo
-				String srcLangSuffix = "_" + getLanguageId(srcLang, langIdStyle, langMap);
-				if (baseName.endsWith(srcLangSuffix)) {
-					// truncates source the source language suffix from base name
-					baseName = baseName.substring(0, baseName.length() - srcLangSuffix.length());
-				}
+	public Integer getUploadChunkKilobytes() {
+		return uploadChunkKilobytes;
+	}
 
-				// append target language suffix to the base name, e.g. foo => foo_de
-				tgtName = baseName + "_" + getLanguageId(language, langIdStyle, langMap) + extension;
-			}
-			outputFile = new FilePath(dir, tgtName);
-			break;
-		}
-		case "lang_only": {
-			FilePath dir = (new FilePath(outBaseDir, relPath)).getParent();
-			int extensionIndex = srcFileName.lastIndexOf('.');
-			String extension = extensionIndex >= 0 ?
-					srcFileName.substring(extensionIndex) : "";
-					String baseName = getLanguageId(language, langIdStyle, langMap);
-					outputFile = new FilePath(dir, baseName + extension);
-					break;
-		}
-		case "lang_subdir": {
-			FilePath dir = new FilePath(outBaseDir, relPath);
-			FilePath langSubDir = new FilePath(dir, getLanguageId(language, langIdStyle, langMap));
-			outputFile = new FilePath(langSubDir, srcFileName);
-			break;
-		}
-		case "lang_dir":{
-			FilePath dir = (new FilePath(outBaseDir, relPath)).getParent();
-			FilePath langDir = new FilePath(dir, getLanguageId(language, langIdStyle, langMap));
-			outputFile = new FilePath(langDir, srcFileName);
-			break;
-		}
-		default: 
-			FilePath dir = new FilePath(outBaseDir, relPath);
-			String tgtName = srcFileName;
-			// Compose file name if the output language is not the source language
-			if (!language.equals(srcLang)) {
-				String baseName = srcFileName;
-				String extension = "";
-				int extensionIndex = srcFileName.lastIndexOf('.');
-				if (extensionIndex > 0) {
-					baseName = srcFileName.substring(0, extensionIndex);
-					extension = srcFileName.substring(extensionIndex);
-				}
+	@DataBoundSetter
+	public void setUploadChunkKilobytes(Integer uploadChunkKilobytes) {
+		this.uploadChunkKilobytes = uploadChunkKilobytes;
+	}
 
-				// checks if the source file's base name (without extension) ends with
-				// source language code suffix, e.g. foo_en => foo
-				String srcLangSuffix = "_" + getLanguageId(srcLang, langIdStyle, langMap);
-				if (baseName.endsWith(srcLangSuffix)) {
-					// truncates source the source language suffix from base name
-					baseName = baseName.substring(0, baseName.length() - srcLangSuffix.length());
-				}
+	public Boolean getIncrementalDownload() {
+		return incrementalDownload;
+	}
 
-				// append target language suffix to the base name, e.g. foo => foo_de
-				tgtName = baseName + "_" + getLanguageId(language, langIdStyle, langMap) + extension;
-			}
-			outputFile = new FilePath(dir, tgtName);
-			break;
-		}
+	@DataBoundSetter
+	public void setIncrementalDownload(Boolean incrementalDownload) {
+		this.incrementalDownload = incrementalDownload;
+	}
 
-		//		if (outputFile == null) {
-		//			throw new InterruptedException("Failed to resolve output directory");
-		//		}
+	boolean isIncrementalDownload() {
+		return incrementalDownload != null && incrementalDownload.booleanValue();
+	}
 
-		listener.getLogger().println("Exporting bundle:" + pathToBundleId(getType(), bf) + " language:" + language + " to "
-				+ outputFile.toURI().getPath());
+	public Boolean getWriteIfChanged() {
+		return writeIfChanged;
+	}
 
-		if (outputFile.exists()) {
-			if (overwrite) {
-				listener.getLogger().println("The output bundle file:" + outputFile.toURI().getPath()
-						+ " already exists - overwriting");
-			} else {
-				listener.getLogger().println("The output bundle file:" + outputFile.toURI().getPath()
-						+ " already exists - skipping");
-				// When overwrite is false, do nothing
-				return;
-			}
+	@DataBoundSetter
+	public void setWriteIfChanged(Boolean writeIfChanged) {
+		this.writeIfChanged = writeIfChanged;
+	}
+
+	boolean isWriteIfChanged() {
+		return writeIfChanged != null && writeIfChanged.booleanValue();
+	}
+
+	public Boolean getBatchOutput() {
+		return batchOutput;
+	}
+
+	@DataBoundSetter
+	public void setBatchOutput(Boolean batchOutput) {
+		this.batchOutput = batchOutput;
+	}
+
+	boolean isBatchOutput() {
+		return batchOutput != null && batchOutput.booleanValue();
+	}
+
+	public Boolean getVirtualThreads() {
+		return virtualThreads;
+	}
+
+	@DataBoundSetter
+	public void setVirtualThreads(Boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	boolean isVirtualThreads() {
+		return virtualThreads != null && virtualThreads.booleanValue();
+	}
+
+	public Boolean getCacheTranslations() {
+		return cacheTranslations;
+	}
+
+	@DataBoundSetter
+	public void setCacheTranslations(Boolean cacheTranslations) {
+		this.cacheTranslations = cacheTranslations;
+	}
+
+	boolean isCacheTranslations() {
+		return cacheTranslations != null && cacheTranslations.booleanValue();
+	}
+
+	public List<ResourceSet> getResourceSets() {
+		return resourceSets == null ? Collections.<ResourceSet>emptyList() : resourceSets;
+	}
+
+	@DataBoundSetter
+	public void setResourceSets(List<ResourceSet> resourceSets) {
+		this.resourceSets = resourceSets == null || resourceSets.isEmpty() ? null
+				: new ArrayList<ResourceSet>(resourceSets);
+	}
+
+	/**
+	 * Returns the resource set of the base directory of the step, followed by
+	 * the additional resource sets.
+	 */
+	List<ResourceSet> getEffectiveResourceSets() {
+		List<ResourceSet> sets = new ArrayList<ResourceSet>();
+		sets.add(new ResourceSet(baseDir, includeRule, excludeRule, type, bundleLayout));
+		sets.addAll(getResourceSets());
+		return sets;
+	}
+
+	/**
+	 * Returns the keys of the additional resource sets, which are added to the
+	 * keys of the job manifests. Without additional resource sets, the keys
+	 * are unchanged.
+	 */
+	private String[] manifestKeys(String... keys) {
+		List<String> allKeys = new ArrayList<String>(Arrays.asList(keys));
+		for (ResourceSet resourceSet : getResourceSets()) {
+			allKeys.add(resourceSet.getBaseDir());
+			allKeys.add(resourceSet.getIncludeRule());
+			allKeys.add(resourceSet.getExcludeRule());
+			allKeys.add(resourceSet.getType());
 		}
+		return allKeys.toArray(new String[allKeys.size()]);
+	}
+
+	public Integer getMaxRetries() {
+		return maxRetries;
+	}
+
+	@DataBoundSetter
+	public void setMaxRetries(Integer maxRetries) {
+		this.maxRetries = maxRetries;
+	}
 
-		if (!outputFile.getParent().exists()) {
-			outputFile.getParent().mkdirs();
+	/**
+	 * Returns the number of times a failed service call is retried. Jobs
+	 * configured before this option existed use the default.
+	 */
+	int getEffectiveMaxRetries() {
+		if (maxRetries == null || maxRetries.intValue() < 0) {
+			return ResilientServiceClient.DEFAULT_MAX_RETRIES;
 		}
+		return Math.min(maxRetries.intValue(), MAX_RETRIES);
+	}
+
+	/**
+	 * Returns the maximum number of resource entries sent in one upload
+	 * request, or 0 if the number is not limited.
+	 */
+	int getEffectiveUploadChunkSize() {
+		return uploadChunkSize == null || uploadChunkSize.intValue() < 1 ? 0 : uploadChunkSize.intValue();
+	}
 
-		LanguageBundle bundle;
-		String embeddedLangId = getEmbeddedLanguageId(language, langMap);
-
-		switch (outContntOpt) {
-		case "merge_to_src":
-			bundle = getBundle(client, pathToBundleId(getType(), bf), language, embeddedLangId, false, true);
-			mergeTranslation(bundle, language, getResourceType(getType()), bf, outputFile);
-			break;
-
-		case "trans_with_fallback":
-			bundle = getBundle(client, pathToBundleId(getType(), bf), language, embeddedLangId, false, true);
-			exportTranslation(bundle, language, getResourceType(getType()), outputFile);
-			break;
-
-		case "trans_only":
-			bundle = getBundle(client, pathToBundleId(getType(), bf), language, embeddedLangId, false, false);
-			exportTranslation(bundle, language, getResourceType(getType()), outputFile);
-			break;
-
-		case "merge_reviewed_to_src":
-			bundle = getBundle(client, pathToBundleId(getType(), bf), language, embeddedLangId, true, true);
-			mergeTranslation(bundle, language, getResourceType(getType()), bf, outputFile);
-			break;
-
-		case "reviewed_with_fallback":
-			bundle = getBundle(client, pathToBundleId(getType(), bf), language, embeddedLangId, true, true);
-			exportTranslation(bundle, language, getResourceType(getType()), outputFile);
-			break;
-
-		case "reviewed_only":
-			bundle = getBundle(client, pathToBundleId(getType(), bf), language, embeddedLangId, true, false);
-			exportTranslation(bundle, language, getResourceType(getType()), outputFile);
-			break;
-
-		default:
-			bundle = getBundle(client, pathToBundleId(getType(), bf), language, embeddedLangId, false, true);
-			mergeTranslation(bundle, language, getResourceType(getType()), bf, outputFile);
-			break;
+	/**
+	 * Returns the approximate maximum size in bytes of one upload request, or
+	 * 0 if the size is not limited.
+	 */
+	long getEffectiveUploadChunkBytes() {
+		return uploadChunkKilobytes == null || uploadChunkKilobytes.intValue() < 1 ? 0
+				: uploadChunkKilobytes.intValue() * 1024L;
+	}
+
+	/**
+	 * Returns the number of bundles processed concurrently. Jobs configured
+	 * before this option existed have no value, and process one bundle at a time.
+	 */
+	int getEffectiveThreadPoolSize() {
+		if (threadPoolSize == null || threadPoolSize.intValue() < 1) {
+			return 1;
 		}
+		return Math.min(threadPoolSize.intValue(), MAX_THREAD_POOL_SIZE);
+	}
+
+	public String computeParentFromBaseDir(FilePath filepath) throws IOException, InterruptedException{
+		return GlobalizationPipelineRunner.computeParentFromBaseDir(getBaseDir(), filepath);
 	}
 
+	public String printFilesConsidered(FilePath[] filePaths) throws IOException, InterruptedException{
+		return GlobalizationPipelineRunner.printFilesConsidered(getBaseDir(), filePaths);
+	}
 
 	@Override
 	public void perform(Run<?,?> build, FilePath workspace, Launcher launcher, TaskListener listener) throws IOException, InterruptedException {
+		perform(build, workspace, launcher, listener, false, false);
+	}
+
+	/**
+	 * Runs the goal, recording the bundles done in the job manifests even when
+	 * the incremental options are disabled if {@code trackProgress} is set.
+	 *
+	 * @param trackProgress whether the manifests are kept whatever the options,
+	 *            for the goal to be resumed after a restart
+	 * @param resumed whether the goal is run again after a restart, so that the
+	 *            bundles recorded as done are skipped
+	 */
+	void perform(Run<?,?> build, FilePath workspace, Launcher launcher, TaskListener listener,
+			boolean trackProgress, boolean resumed) throws IOException, InterruptedException {
 		// This is where you 'build' the project.
 
 		// This also shows how you can consult the global configuration of the builder
@@ -611,6 +557,13 @@ public class GlobalizationPipelineBuilder extends Builder implements SimpleBuild
 			build.setResult(Result.UNSTABLE);
 			return;
 		}
+		for (ResourceSet resourceSet : getResourceSets()) {
+			if(resourceSet.getBaseDir() == null || resourceSet.getIncludeRule() == null || resourceSet.getType() == null){
+				listener.getLogger().println("Null paths or type in the additional resource sets you specified.. Something went wrong.");
+				build.setResult(Result.UNSTABLE);
+				return;
+			}
+		}
 		if(srcLang == null){
 			listener.getLogger().println("Null Source Language. Please check again");
 			build.setResult(Result.UNSTABLE);
@@ -645,352 +598,78 @@ public class GlobalizationPipelineBuilder extends Builder implements SimpleBuild
 		listener.getLogger().println("Bundle layout : " + getBundleLayout());
 		listener.getLogger().println("Output Directory : " + getOutDir());
 		listener.getLogger().println("Overwrite? : " + getOverwrite().toString());
-
-
-
-
-		// All global variables
-		JsonParser jsonParser = new JsonParser(); // JsonParser to parse langMap
-		JsonElement parsedLangMap = null; // Parsed json element from string langMap
-		JsonObject langMapObject = null; // Object represention of parsed langMap
-		Set<String> langMapTargetLanguages = new HashSet<String>(); // fetching targetLanguages from langMap
-		FilePath[] files = null; // files from baseDir after applying include/exclude rules
-		Set<String> bundleIds;// = new HashSet<String>();
-		Map<String, String> langMappingMap = new HashMap<String, String>();
-		ResourceFilter filter;
-		ClassLoader orig;
-
-
-		// CHECKING CREDENTIALS
-		if(url.trim().equals("") || instanceId.trim().equals("") || userId.trim().equals("") || Secret.toString(password).trim().equals("")){
-			listener.getLogger().println("Empty credentials.. Please enter IBM Globalization Pipeline credentials (Instance id, url, username, password).");
-			build.setResult(Result.UNSTABLE);
-			return;
-		}
-		ServiceClient gpClient = null;
-		try{
-			gpClient = ServiceClient.getInstance(
-					ServiceAccount.getInstance(
-							url, instanceId,
-							userId, Secret.toString(password)));
-			gpClient.getBundleIds();
-		}catch(ServiceException e){
-			listener.getLogger().println("Invalid credentials.. Please enter valid IBM Globalization Pipeline credentials (Instance id, url, username, password).");
-			build.setResult(Result.UNSTABLE);
-			return;
+		listener.getLogger().println("Concurrent bundle threads : " + getEffectiveThreadPoolSize());
+		listener.getLogger().println("Incremental upload? : " + isIncrementalUpload());
+		listener.getLogger().println("Delta upload? : " + isDeltaUpload() + (isDeltaUpload() ? ", delete removed keys? : " + isDeleteRemovedKeys() : ""));
+		listener.getLogger().println("Run on agent? : " + isRunOnAgent());
+		listener.getLogger().println("Upload chunk size : "
+				+ (getEffectiveUploadChunkSize() > 0 ? getEffectiveUploadChunkSize() + " entries" : "unlimited") + ", "
+				+ (getEffectiveUploadChunkBytes() > 0 ? uploadChunkKilobytes + " KB" : "unlimited"));
+		listener.getLogger().println("Service call retries : " + getEffectiveMaxRetries());
+		listener.getLogger().println("Incremental download? : " + isIncrementalDownload());
+		listener.getLogger().println("Write changed files only? : " + isWriteIfChanged());
+		listener.getLogger().println("Transfer output files in one archive? : " + isBatchOutput());
+		listener.getLogger().println("Use virtual threads? : " + isVirtualThreads());
+		listener.getLogger().println("Cache translations? : " + isCacheTranslations());
+		for (ResourceSet resourceSet : getResourceSets()) {
+			listener.getLogger().println("Additional resource set : " + resourceSet.getBaseDir() + ", include rule : "
+					+ resourceSet.getIncludeRule() + ", exclude rule : " + resourceSet.getExcludeRule() + ", type : "
+					+ resourceSet.getType() + ", bundle layout : " + resourceSet.getBundleLayout());
 		}
 
 
 
-		// CHECKING PATHS
-		if(baseDir.trim().equals("") || includeRule.trim().equals("")){
-			listener.getLogger().println("Empty Base Directory or include/exclude rules. Please check again.");
-			build.setResult(Result.UNSTABLE);
-			return;
-		}
-		if(!workspace.child(baseDir.trim()).exists()){
-			listener.getLogger().println("Base Directory " + baseDir + " not present in workspace. Please check again.");
-			build.setResult(Result.UNSTABLE);
-			return;
-		}
-		if(excludeRule.trim().equals(includeRule.trim())){
-			listener.getLogger().println("Base Directory " + baseDir + " exists.. But you provided same include and exclude rule. i.e no files to consider.");
-			build.setResult(Result.UNSTABLE);
-			return;
-		}
-		int numberOfIncludefiles = workspace.child(baseDir.trim()).list(includeRule.trim()).length;
-		files = workspace.child(baseDir.trim()).list(includeRule, excludeRule);
-		int numberOfFiles = files.length;
-		if(numberOfIncludefiles == 0){
-			listener.getLogger().println("Base Directory " + baseDir + " exists.. But include rules gives 0 files. i.e no files to consider.");
-			build.setResult(Result.UNSTABLE);
-			return;
-		}
-		if(numberOfFiles == 0){
-			listener.getLogger().println("Base Directory " + baseDir + " exists.. But exclude rule removed all files in include rule. i.e no files to consider.");
-			build.setResult(Result.UNSTABLE);
-			return;
-		}
-		listener.getLogger().println("Considering files ... with include rule:" + includeRule + " and exclude rule:" + excludeRule);
-		listener.getLogger().println(printFilesConsidered(files));
 
-		//CHECKING Source Language
-		if(srcLang.trim().equals("")){
-			listener.getLogger().println("Please enter source language");
-			build.setResult(Result.UNSTABLE);
-			return;
+		UploadManifest manifest = null;
+		File manifestFile = null;
+		if ("upload".equals(goalType) && (isIncrementalUpload() || trackProgress)) {
+			manifestFile = JobManifest.locate(build.getParent().getRootDir(), UploadManifest.PREFIX,
+					manifestKeys(url, instanceId, baseDir, includeRule, excludeRule, type, srcLang));
+			manifest = JobManifest.load(manifestFile, UploadManifest.class);
 		}
-
-		// CHECKING LANGUAGES AND MAPPING
-		if(langMap.trim().equals("")){
-			listener.getLogger().println("Please enter atleast one target language");
-			build.setResult(Result.UNSTABLE);
-			return;
-		}
-		try
-		{
-			parsedLangMap = jsonParser.parse(langMap.trim());
-			langMapObject = parsedLangMap.getAsJsonObject();
-			for(Entry<String, JsonElement> langMapEntry : langMapObject.entrySet()){
-				langMapTargetLanguages.add(langMapEntry.getKey());
-				if(langMapEntry.getValue().getAsString().equals("")){
-					listener.getLogger().println("Please enter non-empty language mapping for target langugage: " + langMapEntry.getKey());
-					build.setResult(Result.UNSTABLE);
-					return;
-				}
-				langMappingMap.put(langMapEntry.getKey(), langMapEntry.getValue().getAsString());
-			}
-			if(langMapTargetLanguages.size() == 0){
-				listener.getLogger().println("Please enter atleast one target language");
-				build.setResult(Result.UNSTABLE);
-				return;
-			}
-
-
-		}catch(JsonParseException jp){
-			listener.getLogger().println("Invalid Json input of Language Map. Please enter valid json form");
-			build.setResult(Result.UNSTABLE);
-			return;
-		}catch(Exception e){
-			listener.getLogger().println("Exception error: " + e.getMessage());
-			build.setResult(Result.FAILURE);
-			return;
+		DownloadManifest downloadManifest = null;
+		File downloadManifestFile = null;
+		if ("download".equals(goalType) && (isIncrementalDownload() || trackProgress)) {
+			downloadManifestFile = JobManifest.locate(build.getParent().getRootDir(), DownloadManifest.PREFIX,
+					manifestKeys(url, instanceId, baseDir, includeRule, excludeRule, type, srcLang, outDir));
+			downloadManifest = JobManifest.load(downloadManifestFile, DownloadManifest.class);
 		}
+		boolean skipRecorded = resumed || ("upload".equals(goalType) ? isIncrementalUpload() : isIncrementalDownload());
+		GlobalizationPipelineRunner runner = new GlobalizationPipelineRunner(this, manifest, downloadManifest,
+				skipRecorded);
 
-
-		//CHECKING OUTPUT DIRECTORY
-		if(outDir.trim().equals("")){
-			listener.getLogger().println("Empty Output Directory. If you chose download goal, then this build will use/create ./target/classes in workspace");
-		}
-		if(!workspace.child(outDir.trim()).exists()){
-			listener.getLogger().println("Output Directory does not exist in workspace. If you chose download goal, then this build will create " + outDir.trim() +" in workspace");
-		}
-		else if(!workspace.child(outDir.trim()).isDirectory()){
-			listener.getLogger().println("Please enter Output Directory, not files");
-			build.setResult(Result.FAILURE);
-			return;
-		}
-		
-		
-		// Serviceloader for any custom filters (optional)
-		try{
-			orig = Thread.currentThread().getContextClassLoader(); 
-			Thread.currentThread().setContextClassLoader(Jenkins.getInstance().getPluginManager().uberClassLoader); 
-			ServiceLoader.load(CSVFilter.class); 
-			/* 
-			 * (optional - only needed in case of adding your own custom filters)
-			 * ADD more custom filters as needed with your custom filter provider class
-			 * Above example uses CSV filter for example.
-			 * For e.g ServiceLoader.load(MyCustomFilter.class);
-			 */
-			
-			// Parse the resource bundle file
-			filter = ResourceFilterFactory.getResourceFilter(getType());
-			Thread.currentThread().setContextClassLoader(orig); 
-		}
-		catch (NullPointerException e) {
-			listener.getLogger().println("Globalization Pipeline exception : " + e.getMessage());
-			build.setResult(Result.UNSTABLE);
-			return;
-		}
-		
-		// UPLOAD
-		if(goalType.equals("upload")){
-			try {
-				bundleIds = gpClient.getBundleIds();
-
-
-				// Process each bundle
-				for (FilePath bf : files) {
-
-
-					// Checks if the bundle already exists
-					String bundleId = pathToBundleId(type, bf);
-					boolean createNew = false;
-					if (bundleIds.contains(bundleId)) {
-						listener.getLogger().println("Found Bundle: " + bundleId);
-
-						// Checks if the source language matches.
-						BundleData bundle = gpClient.getBundleInfo(bundleId);
-						if (!srcLang.equals(bundle.getSourceLanguage())) {
-							listener.getLogger().println("The source language in bundle:"
-									+ bundleId + "(" + bundle.getSourceLanguage()
-									+ ") does not match the specified language("
-									+ srcLang + ").");
-							build.setResult(Result.FAILURE);
-							return;
-						}
-					} else {
-						listener.getLogger().println("bundle:" + bundleId + " does not exist, creating a new bundle.");
-						createNew = true;
-					}
-					
-					
-					if (filter == null) {
-						throw new IOException("Resource filter for " + getType() + " is not available.");
-					}
-					Map<String, NewResourceEntryData> resEntries = new HashMap<>();
-
-					try (InputStream fis = bf.read()) {
-						LanguageBundle resBundle = filter.parse(fis, new FilterOptions(Locale.forLanguageTag(srcLang)));
-
-						if (createNew) {
-							NewBundleData newBundleData = new NewBundleData(srcLang);
-							// set target languages
-							if (!langMapTargetLanguages.isEmpty()) {
-								newBundleData.setTargetLanguages(new TreeSet<String>(langMapTargetLanguages));
-							}
-							// set bundle notes
-							newBundleData.setNotes(resBundle.getNotes());
-							newBundleData.setMetadata(resBundle.getMetadata());
-							gpClient.createBundle(bundleId, newBundleData);
-							listener.getLogger().println("Created bundle: " + bundleId);
-						}
-						Collection<ResourceString> resStrings = resBundle.getResourceStrings();
-						for (ResourceString resString : resStrings) {
-							NewResourceEntryData resEntryData = new NewResourceEntryData(resString.getValue());
-							int seqNum = resString.getSequenceNumber();
-							if (seqNum >= 0) {
-								resEntryData.setSequenceNumber(Integer.valueOf(seqNum));
-							}
-							// set resource string notes
-							resEntryData.setNotes(resString.getNotes());
-							resEntryData.setMetadata(resString.getMetadata());
-							resEntries.put(resString.getKey(), resEntryData);
-						}
-					} catch (IOException e) {
-						listener.getLogger().println("Failed to read the resoruce data from "
-								+ bf.toURI().getPath() + ": " + e.getMessage());
-					} catch (ResourceFilterException e) {
-						throw new IOException("Failed to parse the resource data from "
-								+ bf.toURI().getPath() + ": " + e.getMessage(), e);
-					}
-
-					if (resEntries.isEmpty()) {
-						listener.getLogger().println("No resource entries in " + bf.toURI().getPath());
-					} else {
-						// Upload the resource entries
-						gpClient.uploadResourceEntries(bundleId, srcLang , resEntries);
-						listener.getLogger().println("Uploaded source language(" + srcLang
-								+ ") resource entries(" + resEntries.size() + ") to bundle: " + bundleId);
-					}
-				}
-
-			} catch (ServiceException | NullPointerException e) {
-				listener.getLogger().println("Globalization Pipeline exception : " + e.getMessage());
-				build.setResult(Result.UNSTABLE);
-				return;
-			}
-		}
-
-
-
-		// DOWNLOAD
-		if(goalType.equals("download")){
-
-			// IF outDir does not exist, create target/classes
-			FilePath outDirectory = null;
-			if (outDir == null) {
-				outDirectory = new FilePath(workspace, "target/classes");
+		GlobalizationPipelineRunner.Summary summary = null;
+		try {
+			if (isRunOnAgent()) {
+				listener.getLogger().println("Running on the agent holding the workspace");
+				summary = workspace.act(new GlobalizationPipelineRunner.AgentExecution(runner, listener));
+				manifest = summary.getManifest();
+				downloadManifest = summary.getDownloadManifest();
+			} else {
+				runner.saveProgressTo(manifestFile, downloadManifestFile);
+				summary = runner.execute(workspace, listener, false);
 			}
-			else if(outDir.trim().equals("")){
-				listener.getLogger().println("Empty Output Directory. so checking if ./target/classes exists in workspace");
-				outDirectory = new FilePath(workspace, "target/classes");
-				if(!workspace.child("target/classes").exists()){
-					listener.getLogger().println("./target/classes does not exists in workspace, so creating it");
-					outDirectory.mkdirs();
-				}
-				else{
-					listener.getLogger().println("./target/classes exists in workspace");
+		} finally {
+			// Bundles uploaded before a failure are remembered for the next build
+			if (manifest != null) {
+				try {
+					manifest.save(manifestFile);
+				} catch (IOException e) {
+					listener.getLogger().println("Failed to save the upload manifest : " + e.getMessage());
 				}
 			}
-			else{
-				outDirectory = new FilePath(workspace, outDir);
-			}
-
-
-			try {
-				bundleIds = gpClient.getBundleIds();
-			} catch (ServiceException e1) {
-				listener.getLogger().println("Failed fetching bundles : " + e1.getMessage());
-				build.setResult(Result.UNSTABLE);
-				return;
-			}
-			// Process each bundle
-			for (FilePath bf : files) {
-
-
-
-				String bundleId = pathToBundleId(getType(), bf);
-				if (!bundleIds.contains(bundleId)) {
-					listener.getLogger().println("The bundle:" + bundleId + " does not exist.");
-					continue;
-				}
-
-				BundleData bdlData = null;
+			if (downloadManifest != null) {
 				try {
-					bdlData = gpClient.getBundleInfo(bundleId);
-				} catch (ServiceException e) {
-					listener.getLogger().println("Failed to get bundle data for " + bundleId + " : " + e.getMessage());
-					build.setResult(Result.UNSTABLE);
-					return;
-				}
-
-				String bdlSrcLang = bdlData.getSourceLanguage();
-				Set<String> bdlTrgLangs = bdlData.getTargetLanguages();
-				Set<String> bdlLangs = new HashSet<String>();
-				bdlLangs.add(bdlSrcLang);
-				if (bdlTrgLangs != null) {
-					bdlLangs.addAll(bdlData.getTargetLanguages());
-				}
-
-				if (!srcLang.equals(bdlSrcLang)) {
-					listener.getLogger().println("The source language of the bundle:" + bundleId
-							+ " (" + bdlSrcLang + ") is different from the language specified by the configuration ("
-							+ srcLang + ")");
-
-				}
-
-				if (outputSourceLang) {
-					if (bdlLangs.contains(srcLang)) {
-						try {
-							exportLanguageResource(gpClient, bf, srcLang, outDirectory,
-									outputContentOption, bundleLayout , languageIdStyle, srcLang, langMappingMap, listener);
-						} catch (ServiceException e) {
-							listener.getLogger().println("Failed to export language resource " + bundleId + " : " + e.getMessage());
-							build.setResult(Result.UNSTABLE);
-							return;
-						}
-					} else {
-						listener.getLogger().println("The specified source language (" + srcLang
-								+ ") does not exist in the bundle:" + bundleId);
-					}
-				}
-
-				for (String tgtLang: langMapTargetLanguages) {
-					if (bdlLangs.contains(tgtLang)) {
-						try {
-							exportLanguageResource(gpClient, bf, tgtLang, outDirectory,
-									outputContentOption, bundleLayout, languageIdStyle, srcLang, langMappingMap, listener);
-						} catch (ServiceException e) {
-							listener.getLogger().println("Failed to export language resource " + bundleId + " : " + e.getMessage());
-							build.setResult(Result.UNSTABLE);
-							return;
-						}
-					} else {
-						listener.getLogger().println("The specified target language (" + tgtLang
-								+ ") does not exist in the bundle:" + bundleId);
-					}
+					downloadManifest.save(downloadManifestFile);
+				} catch (IOException e) {
+					listener.getLogger().println("Failed to save the download manifest : " + e.getMessage());
 				}
-
 			}
-
-
 		}
-
-
-		listener.getLogger().println("*************** IBM GLOBALIZATION PIPELINE BUILDSTEP Done!! ***************");
-
+		GlobalizationPipelineAction.record(build, summary.getMetrics(), listener);
+		if (summary.getResult() != null) {
+			build.setResult(summary.getResult());
+		}
 	}
 
 	// Overridden for better type safety.
@@ -1117,12 +796,14 @@ public class GlobalizationPipelineBuilder extends Builder implements SimpleBuild
 					return FormValidation.error("One/more of the previous field(s) is/are empty");
 				}
 
-				ServiceClient gpClient = ServiceClient.getInstance(
-						ServiceAccount.getInstance(
-								url, instanceId,
-								userId, password));
-				gpClient.getBundleIds();
-				return FormValidation.okWithMarkup("<b><span style='color:green'>Successful connection!</span></b>");
+				// An explicit test goes to the service, unless the same credentials were just checked
+				CredentialCheck.Verdict verdict = CredentialCheck.check(url, instanceId, userId, password, true);
+				if (!verdict.isValid()) {
+					return FormValidation.error("Globalization Pipeline error : Please check credentials.. Make sure you input credential from Globalization Pipeline instance on IBM Bluemix"
+							+ verdict.describeAge());
+				}
+				return FormValidation.okWithMarkup("<b><span style='color:green'>Successful connection!</span></b>"
+						+ verdict.describeAge());
 			} catch (Exception e) {
 				return FormValidation.error("Globalization Pipeline error : Please check credentials.. Make sure you input credential from Globalization Pipeline instance on IBM Bluemix");
 			}
@@ -1180,7 +861,7 @@ public class GlobalizationPipelineBuilder extends Builder implements SimpleBuild
 				if(!work.child(baseDir.trim()).exists()){
 					return FormValidation.warning("Base Directory you mentioned does not exist in workspace at the moment. Assuming that Base Directory will be pulled, make sure all the files mentioned in Include Rule exist in your SCM");
 				}
-				int files = work.child(baseDir.trim()).list(includeRule).length;
+				int files = WorkspaceScanner.scan(work.child(baseDir.trim()), includeRule, "").getFileCount();
 				if(files == 0){
 					return FormValidation.warning("Base Directory exists, but no such files exist in workspace at the moment. Make sure those files are pulled in previous build steps");
 				}
@@ -1226,16 +907,15 @@ public class GlobalizationPipelineBuilder extends Builder implements SimpleBuild
 				if(excludeRule.trim().equals(includeRule.trim())){
 					return FormValidation.error("Same include and exclude rule.. so, no files/bundles can be processed");
 				}
-				int includefiles = work.child(baseDir.trim()).list(includeRule).length;
-				int excludefiles = work.child(baseDir.trim()).list(excludeRule).length;
-				int files = work.child(baseDir.trim()).list(includeRule, excludeRule).length;
-				if(excludefiles == 0){
+				// One walk evaluates both rules; excluded folders are not entered, so their files are not counted
+				WorkspaceScanner.Result scan = WorkspaceScanner.scan(work.child(baseDir.trim()), includeRule, excludeRule);
+				if(!scan.hasExclusions()){
 					return FormValidation.warning("Base Directory exists, but no such files exist in workspace at the moment. Make sure those files are pulled in previous build steps");
 				}
 
-				return FormValidation.okWithMarkup("<span style='color:green'><b>" + includefiles + "</b> match(es) found in current workspace with include rule!.<br/><b>"
-						+ (excludefiles) + "</b> match(es) found in current workspace with exclude rule!.<br/><b>"
-						+ files + "</b> files/bundles will be processed in current workspace with given include and exclude rule!. Results will vary depending on SCM pull to workspace from previous build step</span>");
+				return FormValidation.okWithMarkup("<span style='color:green'><b>" + scan.getExcludedFiles() + "</b> included file(s) and <b>"
+						+ scan.getExcludedDirectories() + "</b> folder(s) excluded in current workspace with exclude rule!.<br/><b>"
+						+ scan.getFileCount() + "</b> files/bundles will be processed in current workspace with given include and exclude rule!. Results will vary depending on SCM pull to workspace from previous build step</span>");
 			}catch(Exception e){
 				return FormValidation.error("Include Rule format issue : " + e.getMessage());
 			}
@@ -1280,13 +960,11 @@ public class GlobalizationPipelineBuilder extends Builder implements SimpleBuild
 				if(url.trim().equals("") || instanceId.trim().equals("") || userId.trim().equals("") || password.trim().equals("")){
 					return FormValidation.error("One/more of the Credential field(s) is/are empty");
 				}
-				ServiceClient gpClient;
 				try{
-					gpClient = ServiceClient.getInstance(
-							ServiceAccount.getInstance(
-									url, instanceId,
-									userId, password));
-					gpClient.getBundleIds();
+					CredentialCheck.Verdict verdict = CredentialCheck.check(url, instanceId, userId, password, false);
+					if(!verdict.isValid()){
+						return FormValidation.error("Please enter the correct credentials for Globalization Pipeline" + verdict.describeAge());
+					}
 				}catch(Exception ge){
 					return FormValidation.error("Please enter the correct credentials for Globalization Pipeline");
 				}
@@ -1345,6 +1023,94 @@ public class GlobalizationPipelineBuilder extends Builder implements SimpleBuild
 
 		// VALIDATING Overwrite NO NEED
 
+		// VALIDATING THREADPOOLSIZE
+		public FormValidation doCheckThreadPoolSize(@QueryParameter("threadPoolSize") String threadPoolSize)throws IOException, ServletException{
+
+			try{
+				if(threadPoolSize == null || threadPoolSize.trim().equals("")){
+					return FormValidation.ok("Bundles will be processed one at a time");
+				}
+				int size = Integer.parseInt(threadPoolSize.trim());
+				if(size < 1){
+					return FormValidation.error("Please enter a number greater than 0");
+				}
+				if(size > MAX_THREAD_POOL_SIZE){
+					return FormValidation.warning("At most " + MAX_THREAD_POOL_SIZE + " threads will be used");
+				}
+				return FormValidation.okWithMarkup("<span style='color:green'>Up to <b>" + size + "</b> bundle(s) will be processed concurrently.</span>");
+			}catch(NumberFormatException e){
+				return FormValidation.error("Please enter a number");
+			}catch(Exception e){
+				return FormValidation.error("Something went wrong @threadPoolSize " + e.getMessage());
+			}
+
+		}
+
+		// VALIDATING UPLOADCHUNKSIZE
+		public FormValidation doCheckUploadChunkSize(@QueryParameter("uploadChunkSize") String uploadChunkSize)throws IOException, ServletException{
+
+			try{
+				if(uploadChunkSize == null || uploadChunkSize.trim().equals("")){
+					return FormValidation.ok("The number of entries per request is not limited");
+				}
+				int size = Integer.parseInt(uploadChunkSize.trim());
+				if(size < 1){
+					return FormValidation.error("Please enter a number greater than 0");
+				}
+				return FormValidation.okWithMarkup("<span style='color:green'>Up to <b>" + size + "</b> resource entries will be sent per request.</span>");
+			}catch(NumberFormatException e){
+				return FormValidation.error("Please enter a number");
+			}catch(Exception e){
+				return FormValidation.error("Something went wrong @uploadChunkSize " + e.getMessage());
+			}
+
+		}
+
+		// VALIDATING UPLOADCHUNKKILOBYTES
+		public FormValidation doCheckUploadChunkKilobytes(@QueryParameter("uploadChunkKilobytes") String uploadChunkKilobytes)throws IOException, ServletException{
+
+			try{
+				if(uploadChunkKilobytes == null || uploadChunkKilobytes.trim().equals("")){
+					return FormValidation.ok("The size of a request is not limited");
+				}
+				int size = Integer.parseInt(uploadChunkKilobytes.trim());
+				if(size < 1){
+					return FormValidation.error("Please enter a number greater than 0");
+				}
+				return FormValidation.okWithMarkup("<span style='color:green'>Requests will be kept under about <b>" + size + "</b> KB.</span>");
+			}catch(NumberFormatException e){
+				return FormValidation.error("Please enter a number");
+			}catch(Exception e){
+				return FormValidation.error("Something went wrong @uploadChunkKilobytes " + e.getMessage());
+			}
+
+		}
+
+		// VALIDATING MAXRETRIES
+		public FormValidation doCheckMaxRetries(@QueryParameter("maxRetries") String maxRetries)throws IOException, ServletException{
+
+			try{
+				if(maxRetries == null || maxRetries.trim().equals("")){
+					return FormValidation.ok("Failed service calls will be retried " + ResilientServiceClient.DEFAULT_MAX_RETRIES + " times");
+				}
+				int retries = Integer.parseInt(maxRetries.trim());
+				if(retries < 0){
+					return FormValidation.error("Please enter 0 or a greater number");
+				}
+				if(retries > MAX_RETRIES){
+					return FormValidation.warning("At most " + MAX_RETRIES + " retries will be made");
+				}
+				if(retries == 0){
+					return FormValidation.ok("Failed service calls will not be retried");
+				}
+				return FormValidation.okWithMarkup("<span style='color:green'>Failed service calls will be retried up to <b>" + retries + "</b> time(s).</span>");
+			}catch(NumberFormatException e){
+				return FormValidation.error("Please enter a number");
+			}catch(Exception e){
+				return FormValidation.error("Something went wrong @maxRetries " + e.getMessage());
+			}
+
+		}
 
 
 		public boolean isApplicable(Class<? extends AbstractProject> aClass) {
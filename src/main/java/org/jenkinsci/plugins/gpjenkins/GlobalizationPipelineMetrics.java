@@ -0,0 +1,254 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import hudson.Extension;
+import hudson.model.Job;
+import hudson.model.RootAction;
+import hudson.model.Run;
+import jenkins.model.Jenkins;
+
+/**
+ * Serves the step metrics of the last build of each job running the
+ * Globalization Pipeline build step, for monitoring systems.
+ *
+ * <ul>
+ * <li>{@code /gp-metrics/} returns them in the Prometheus text format.</li>
+ * <li>{@code /gp-metrics/json} returns them as JSON, by job.</li>
+ * </ul>
+ *
+ * <p>
+ * The metrics are kept with the builds, so after a restart the last build of
+ * each job is searched for them when first served. Only the jobs the user
+ * can read are included.
+ */
+@Extension
+public final class GlobalizationPipelineMetrics implements RootAction {
+
+	/** Metrics of the last build of each job, by full name of the job */
+	private static final Map<String, LastBuild> LAST_BUILDS = new TreeMap<String, LastBuild>();
+
+	/** Full names of the jobs whose builds were searched for metrics */
+	private static final Set<String> SEARCHED_JOBS = new HashSet<String>();
+
+	private static final class LastBuild {
+
+		private final int number;
+		private final List<StepMetrics> steps;
+
+		LastBuild(int number, List<StepMetrics> steps) {
+			this.number = number;
+			this.steps = steps;
+		}
+	}
+
+	@Override
+	public String getIconFileName() {
+		// Not shown in the side panel
+		return null;
+	}
+
+	@Override
+	public String getDisplayName() {
+		return "Globalization Pipeline Metrics";
+	}
+
+	@Override
+	public String getUrlName() {
+		return "gp-metrics";
+	}
+
+	/**
+	 * Records the metrics of the steps of a build, unless a later build of
+	 * the job has been recorded already.
+	 */
+	static void update(Run<?, ?> build, List<StepMetrics> steps) {
+		String job = build.getParent().getFullName();
+		synchronized (LAST_BUILDS) {
+			LastBuild last = LAST_BUILDS.get(job);
+			if (last == null || last.number <= build.getNumber()) {
+				LAST_BUILDS.put(job, new LastBuild(build.getNumber(), steps));
+			}
+		}
+	}
+
+	/**
+	 * Records the metrics of the last build with the step of each job the
+	 * user can read, unless the job was searched already.
+	 */
+	private static void loadLastBuilds(Jenkins jenkins) {
+		for (Job<?, ?> job : jenkins.getAllItems(Job.class)) {
+			synchronized (LAST_BUILDS) {
+				if (!SEARCHED_JOBS.add(job.getFullName())) {
+					continue;
+				}
+			}
+			// Builds without the step are skipped, but only a bounded number is loaded
+			Run<?, ?> build = job.getLastBuild();
+			for (int i = 0; build != null && i < GlobalizationPipelineAction.TREND_BUILDS * 2; i++) {
+				GlobalizationPipelineAction action = build.getAction(GlobalizationPipelineAction.class);
+				if (action != null) {
+					update(build, action.getSteps());
+					break;
+				}
+				build = build.getPreviousBuild();
+			}
+		}
+	}
+
+	/**
+	 * Returns the metrics the user can see.
+	 */
+	private static Map<String, LastBuild> visibleBuilds() {
+		Jenkins jenkins = Jenkins.getInstance();
+		jenkins.checkPermission(Jenkins.READ);
+		loadLastBuilds(jenkins);
+		Map<String, LastBuild> builds;
+		synchronized (LAST_BUILDS) {
+			builds = new TreeMap<String, LastBuild>(LAST_BUILDS);
+		}
+		// Jobs which were deleted or which the user cannot read are left out
+		builds.keySet().removeIf(job -> jenkins.getItemByFullName(job, Job.class) == null);
+		return builds;
+	}
+
+	public void doIndex(StaplerRequest req, StaplerResponse rsp) throws IOException {
+		Map<String, LastBuild> builds = visibleBuilds();
+		rsp.setContentType("text/plain; version=0.0.4; charset=utf-8");
+		PrintWriter out = rsp.getWriter();
+
+		help(out, "gp_last_build", "gauge", "Number of the last build running the Globalization Pipeline step");
+		for (Map.Entry<String, LastBuild> build : builds.entrySet()) {
+			sample(out, "gp_last_build", labels("job", build.getKey()), build.getValue().number);
+		}
+
+		help(out, "gp_step_duration_seconds", "gauge", "Duration of the step in the last build");
+		forEachStep(builds, (labels, step) -> sample(out, "gp_step_duration_seconds", labels,
+				step.getDurationMillis() / 1000.0));
+
+		help(out, "gp_phase_seconds", "gauge", "Time spent in each phase by all workers in the last build");
+		forEachPhase(builds, (labels, stats) -> sample(out, "gp_phase_seconds", labels, stats.getTotalMillis() / 1000.0));
+		help(out, "gp_phase_count", "gauge", "Number of times each phase ran in the last build");
+		forEachPhase(builds, (labels, stats) -> sample(out, "gp_phase_count", labels, stats.getCount()));
+		help(out, "gp_phase_bytes", "gauge", "Bytes processed by each phase in the last build");
+		forEachPhase(builds, (labels, stats) -> sample(out, "gp_phase_bytes", labels, stats.getBytes()));
+		help(out, "gp_phase_items", "gauge", "Files, entries or bundles processed by each phase in the last build");
+		forEachPhase(builds, (labels, stats) -> sample(out, "gp_phase_items", labels, stats.getItems()));
+
+		help(out, "gp_operation_latency_seconds", "summary", "Latency of each service operation in the last build");
+		forEachOperation(builds, (labels, stats) -> {
+			sample(out, "gp_operation_latency_seconds", labels + ",quantile=\"0.5\"", stats.getP50Millis() / 1000);
+			sample(out, "gp_operation_latency_seconds", labels + ",quantile=\"0.95\"", stats.getP95Millis() / 1000);
+			sample(out, "gp_operation_latency_seconds", labels + ",quantile=\"0.99\"", stats.getP99Millis() / 1000);
+			sample(out, "gp_operation_latency_seconds_sum", labels, stats.getTotalMillis() / 1000.0);
+			sample(out, "gp_operation_latency_seconds_count", labels, stats.getCount());
+		});
+		help(out, "gp_operation_failures", "gauge", "Failed calls of each service operation in the last build");
+		forEachOperation(builds, (labels, stats) -> sample(out, "gp_operation_failures", labels, stats.getFailures()));
+		out.flush();
+	}
+
+	public void doJson(StaplerRequest req, StaplerResponse rsp) throws IOException {
+		JsonObject json = new JsonObject();
+		for (Map.Entry<String, LastBuild> build : visibleBuilds().entrySet()) {
+			JsonObject job = new JsonObject();
+			job.addProperty("number", build.getValue().number);
+			JsonArray steps = new JsonArray();
+			for (StepMetrics step : build.getValue().steps) {
+				steps.add(step.toJson());
+			}
+			job.add("steps", steps);
+			json.add(build.getKey(), job);
+		}
+		rsp.setContentType("application/json; charset=utf-8");
+		rsp.getWriter().print(json.toString());
+	}
+
+	private interface StepVisitor {
+		void visit(String labels, StepMetrics step);
+	}
+
+	private interface StatsVisitor {
+		void visit(String labels, StepMetrics.Stats stats);
+	}
+
+	/**
+	 * Visits each step, labelled with the job, the goal and the index of the
+	 * step in the build.
+	 */
+	private static void forEachStep(Map<String, LastBuild> builds, StepVisitor visitor) {
+		for (Map.Entry<String, LastBuild> build : builds.entrySet()) {
+			List<StepMetrics> steps = new ArrayList<StepMetrics>(build.getValue().steps);
+			for (int i = 0; i < steps.size(); i++) {
+				StepMetrics step = steps.get(i);
+				visitor.visit(labels("job", build.getKey(), "goal", step.getGoal(), "step", String.valueOf(i)), step);
+			}
+		}
+	}
+
+	private static void forEachPhase(Map<String, LastBuild> builds, StatsVisitor visitor) {
+		forEachStep(builds, (labels, step) -> {
+			for (StepMetrics.Stats stats : step.getPhases()) {
+				visitor.visit(labels + "," + labels("phase", stats.getName()), stats);
+			}
+		});
+	}
+
+	private static void forEachOperation(Map<String, LastBuild> builds, StatsVisitor visitor) {
+		forEachStep(builds, (labels, step) -> {
+			for (StepMetrics.Stats stats : step.getOperations()) {
+				visitor.visit(labels + "," + labels("operation", stats.getName()), stats);
+			}
+		});
+	}
+
+	private static void help(PrintWriter out, String name, String type, String help) {
+		out.print("# HELP " + name + " " + help + "\n");
+		out.print("# TYPE " + name + " " + type + "\n");
+	}
+
+	private static void sample(PrintWriter out, String name, String labels, double value) {
+		out.print(name + "{" + labels + "} " + Double.toString(value) + "\n");
+	}
+
+	private static String labels(String... namesAndValues) {
+		StringBuilder labels = new StringBuilder();
+		for (int i = 0; i < namesAndValues.length; i += 2) {
+			if (i > 0) {
+				labels.append(',');
+			}
+			labels.append(namesAndValues[i]).append("=\"")
+					.append(namesAndValues[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+					.append('"');
+		}
+		return labels.toString();
+	}
+}
@@ -0,0 +1,1447 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.io.output.CountingOutputStream;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.ibm.g11n.pipeline.client.BundleData;
+import com.ibm.g11n.pipeline.client.ResourceEntryData;
+import com.ibm.g11n.pipeline.client.ServiceException;
+import com.ibm.g11n.pipeline.client.TranslationStatus;
+import com.ibm.g11n.pipeline.resfilter.FilterOptions;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundle;
+import com.ibm.g11n.pipeline.resfilter.LanguageBundleBuilder;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilter;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterException;
+import com.ibm.g11n.pipeline.resfilter.ResourceFilterFactory;
+import com.ibm.g11n.pipeline.resfilter.ResourceString;
+import com.ibm.g11n.pipeline.resfilter.csv.CSVFilter;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Result;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import hudson.util.Secret;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.model.Jenkins;
+
+/**
+ * Executes the upload or download goal of a {@link GlobalizationPipelineBuilder}.
+ *
+ * <p>
+ * The runner holds a snapshot of the build step configuration and is
+ * serializable, so the whole goal (workspace scan, parsing, service calls and
+ * writing of output files) can either run on the controller against a remote
+ * workspace, or be sent to the agent holding the workspace with
+ * {@link AgentExecution}. In the latter case, only the {@link Summary} travels
+ * back to the controller.
+ */
+final class GlobalizationPipelineRunner implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Minimum time between two saves of the manifests while the goal runs */
+	private static final long PROGRESS_SAVE_MILLIS = 2000;
+
+	private final String instanceId;
+	private final String url;
+	private final String userId;
+	private final Secret password;
+	private final String goalType;
+	/** Resource sets of the step, starting with the one of its own base directory */
+	private final List<ResourceSet> resourceSets;
+	private final String srcLang;
+	private final String langMap;
+	private final String languageIdStyle;
+	private final boolean outputSourceLang;
+	private final String outputContentOption;
+	private final String outDir;
+	private final boolean overwrite;
+	private final boolean writeIfChanged;
+	private final boolean batchOutput;
+	private final int threadPoolSize;
+	private final boolean virtualThreads;
+	private final boolean cacheTranslations;
+	private final boolean deltaUpload;
+	private final boolean deleteRemovedKeys;
+	private final int uploadChunkSize;
+	private final long uploadChunkBytes;
+	private final int maxRetries;
+
+	/** Manifest of the incremental upload, or null if it is disabled */
+	private final UploadManifest manifest;
+	/** Manifest of the incremental download, or null if it is disabled */
+	private final DownloadManifest downloadManifest;
+	/** Whether the bundles recorded as done in the manifests are skipped, or only recorded */
+	private final boolean skipRecorded;
+
+	/** Files the manifests are saved to as the goal progresses, or null, set by {@link #saveProgressTo} */
+	private transient File manifestFile;
+	private transient File downloadManifestFile;
+	/** Time the manifests were last saved by {@link #saveProgress} */
+	private transient long lastProgressSave;
+
+	/** Whether the goal runs outside of the Jenkins controller, set by {@link #execute} */
+	private transient boolean onAgent;
+	/** Translation cache of the controller, or null on an agent, set by {@link #execute} */
+	private transient TranslationCache translationCache;
+
+	/**
+	 * @param skipRecorded whether the bundles the manifests record as done are
+	 *            skipped; when false, the manifests are only updated
+	 */
+	GlobalizationPipelineRunner(GlobalizationPipelineBuilder builder, UploadManifest manifest,
+			DownloadManifest downloadManifest, boolean skipRecorded) {
+		this.instanceId = builder.getInstanceId();
+		this.url = builder.getUrl();
+		this.userId = builder.getUserId();
+		this.password = builder.getPassword();
+		this.goalType = builder.getGoalType();
+		this.resourceSets = new ArrayList<ResourceSet>(builder.getEffectiveResourceSets());
+		this.srcLang = builder.getSrcLang();
+		this.langMap = builder.getLangMap();
+		this.languageIdStyle = builder.getLanguageIdStyle();
+		this.outputSourceLang = Boolean.TRUE.equals(builder.getOutputSourceLang());
+		this.outputContentOption = builder.getOutputContentOption();
+		this.outDir = builder.getOutDir();
+		this.overwrite = Boolean.TRUE.equals(builder.getOverwrite());
+		this.writeIfChanged = builder.isWriteIfChanged();
+		this.batchOutput = builder.isBatchOutput();
+		this.threadPoolSize = builder.getEffectiveThreadPoolSize();
+		this.virtualThreads = builder.isVirtualThreads();
+		this.cacheTranslations = builder.isCacheTranslations();
+		this.deltaUpload = builder.isDeltaUpload();
+		this.deleteRemovedKeys = builder.isDeleteRemovedKeys();
+		this.uploadChunkSize = builder.getEffectiveUploadChunkSize();
+		this.uploadChunkBytes = builder.getEffectiveUploadChunkBytes();
+		this.maxRetries = builder.getEffectiveMaxRetries();
+		this.manifest = manifest;
+		this.downloadManifest = downloadManifest;
+		this.skipRecorded = skipRecorded;
+	}
+
+	/**
+	 * Saves the manifests to the given files after each bundle, instead of
+	 * only at the end of the goal, so that a goal run again after Jenkins
+	 * restarts skips the bundles already done. Only possible on the controller,
+	 * where the files are.
+	 */
+	void saveProgressTo(File manifestFile, File downloadManifestFile) {
+		this.manifestFile = manifestFile;
+		this.downloadManifestFile = downloadManifestFile;
+	}
+
+	/**
+	 * Saves the manifests set by {@link #saveProgressTo}, at most once per
+	 * {@link #PROGRESS_SAVE_MILLIS} to keep large manifests from being
+	 * rewritten for every bundle. The build step saves them again at the end.
+	 */
+	private void saveProgress(TaskListener listener) {
+		long now = System.currentTimeMillis();
+		if (now - lastProgressSave < PROGRESS_SAVE_MILLIS) {
+			return;
+		}
+		lastProgressSave = now;
+		try {
+			if (manifest != null && manifestFile != null) {
+				manifest.save(manifestFile);
+			}
+			if (downloadManifest != null && downloadManifestFile != null) {
+				downloadManifest.save(downloadManifestFile);
+			}
+		} catch (IOException e) {
+			listener.getLogger().println("Failed to save the progress of the goal : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Compact result of a run, sent back to the controller.
+	 */
+	static final class Summary implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private Result result;
+		private final StepMetrics metrics;
+		private UploadManifest manifest;
+		private DownloadManifest downloadManifest;
+
+		Summary(StepMetrics metrics) {
+			this.metrics = metrics;
+		}
+
+		/**
+		 * Returns the result the build should be set to, or null if the goal
+		 * completed successfully.
+		 */
+		Result getResult() {
+			return result;
+		}
+
+		/**
+		 * Returns the timings of the run.
+		 */
+		StepMetrics getMetrics() {
+			return metrics;
+		}
+
+		/**
+		 * Returns the updated manifest of the incremental upload, or null.
+		 */
+		UploadManifest getManifest() {
+			return manifest;
+		}
+
+		/**
+		 * Returns the updated manifest of the incremental download, or null.
+		 */
+		DownloadManifest getDownloadManifest() {
+			return downloadManifest;
+		}
+
+		Summary finish(Result result) {
+			this.result = result;
+			return this;
+		}
+	}
+
+	/**
+	 * Runs the goal on the agent holding the workspace.
+	 */
+	static final class AgentExecution extends MasterToSlaveFileCallable<Summary> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final GlobalizationPipelineRunner runner;
+		private final TaskListener listener;
+
+		AgentExecution(GlobalizationPipelineRunner runner, TaskListener listener) {
+			this.runner = runner;
+			this.listener = listener;
+		}
+
+		@Override
+		public Summary invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+			return runner.execute(new FilePath(workspace), listener, true);
+		}
+	}
+
+	static String computeParentFromBaseDir(String baseDir, FilePath filepath) throws IOException, InterruptedException{
+		String parent = "";
+		if(filepath.getParent() != null){
+			parent = filepath.getParent().toURI().getPath();
+			int baseIndex = parent.lastIndexOf(baseDir);
+			// The base directory is a plain path, not a regular expression
+			parent = baseIndex < 0 ? "" : parent.substring(baseIndex).replace(baseDir + "/", "");
+		}
+		return parent;
+	}
+
+	/**
+	 * Returns the path of the file relative to the base directory, using '/' as
+	 * the separator. Only the remote path names are compared, so this does not
+	 * involve a call to the agent.
+	 */
+	static String relativePath(FilePath baseDirectory, FilePath filepath) {
+		String base = baseDirectory.getRemote().replace('\\', '/');
+		String path = filepath.getRemote().replace('\\', '/');
+		if (!base.endsWith("/")) {
+			base = base + "/";
+		}
+		return path.startsWith(base) ? path.substring(base.length()) : filepath.getName();
+	}
+
+	static String printFilesConsidered(String baseDir, FilePath[] filePaths) throws IOException, InterruptedException{
+		String filesConsidered = "";
+		StringBuffer filesConsideredBuffer = new StringBuffer(filesConsidered);
+		for(FilePath filePath : filePaths){
+			filesConsideredBuffer.append(computeParentFromBaseDir(baseDir, filePath) + filePath.getName() + '\n');
+		}
+		filesConsidered = filesConsideredBuffer.toString();
+		return filesConsidered;
+	}
+
+	static String printFilesConsidered(SourceFile[] sourceFiles) {
+		StringBuilder filesConsidered = new StringBuilder();
+		for (SourceFile sourceFile : sourceFiles) {
+			filesConsidered.append(sourceFile.getRelativePath()).append('\n');
+		}
+		return filesConsidered.toString();
+	}
+
+	/**
+	 * Returns true if virtual threads were requested and the JVM running the
+	 * goal, which may be an agent, supports them.
+	 */
+	private boolean useVirtualThreads() {
+		return virtualThreads && WorkerPools.isVirtualThreadsSupported();
+	}
+
+	private String getResourceType(String type){
+		return type.toUpperCase();
+	}
+
+
+	private String getLanguageId(String gpLanguageTag, String langIdStyle,
+			Map<String, String> langMappingMap) {
+		String languageId = gpLanguageTag;
+		if (langMappingMap != null) {
+			String mappedId = langMappingMap.get(gpLanguageTag);
+			if (mappedId != null) {
+				languageId = mappedId;
+			}
+		}
+		switch (langIdStyle) {
+		case "bcp47_underscore":
+			languageId = languageId.replace('-', '_');
+			break;
+		case "bcp47":
+			// do nothing
+			break;
+		default:
+			languageId = languageId.replace('-', '_');
+			break;
+		}
+		return languageId;
+	}
+
+	private String getEmbeddedLanguageId(String gpLanguageTag, Map<String, String> langMap) {
+		String languageId = gpLanguageTag;
+		if (langMap != null) {
+			String mappedId = langMap.get(gpLanguageTag);
+			if (mappedId != null) {
+				languageId = mappedId;
+			}
+		}
+		return languageId;
+	}
+
+
+	/**
+	 * Merges the translated strings into the source file and writes the
+	 * result to the output file, or adds it to the batch if there is one.
+	 *
+	 * @return false if the output file already had the same content and was not rewritten
+	 */
+	private boolean mergeTranslation(LanguageBundle bundle, String language, String type,
+			SourceTemplate source, FilePath outFile, OutputBatch batch, LanguageExportResult result,
+			StepMetrics metrics) throws InterruptedException, IOException {
+		long start = System.nanoTime();
+		ResourceFilter filter = ResourceFilterFactory.getResourceFilter(type);
+		ByteArrayOutputStream buffer = writeIfChanged || batch != null ? new ByteArrayOutputStream() : null;
+		CountingOutputStream fos = new CountingOutputStream(buffer != null ? buffer : outFile.write());
+		try (OutputStream out = fos;
+				InputStream fis = source.open()) {
+			filter.merge(fis, out, bundle, new FilterOptions(Locale.forLanguageTag(language)));
+		} catch (IOException e) {
+			throw new IOException("I/O error while merging the translated strings to " + outFile.getName(), e);
+		} catch (ResourceFilterException e) {
+			throw new IOException("Resource filter error while merging the translated strings to " + outFile.getName(), e);
+		}
+		boolean changed = buffer == null || store(buffer, outFile, batch, result);
+		metrics.record(StepMetrics.Phase.MERGE_WRITE, result.getBundleId(), language, System.nanoTime() - start,
+				fos.getByteCount(), 1);
+		return changed;
+	}
+
+	/**
+	 * Writes the translated strings to the output file, or adds them to the
+	 * batch if there is one.
+	 *
+	 * @return false if the output file already had the same content and was not rewritten
+	 */
+	private boolean exportTranslation(LanguageBundle bundle, String language, String type,
+			FilePath outFile, OutputBatch batch, LanguageExportResult result, StepMetrics metrics)
+					throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		ResourceFilter filter = ResourceFilterFactory.getResourceFilter(type);
+		ByteArrayOutputStream buffer = writeIfChanged || batch != null ? new ByteArrayOutputStream() : null;
+		CountingOutputStream fos = new CountingOutputStream(buffer != null ? buffer : outFile.write());
+		try (OutputStream out = fos) {
+			filter.write(out, bundle, new FilterOptions(Locale.forLanguageTag(language)));
+		} catch (IOException e) {
+            throw new IOException("I/O error while writing the translated strings to "
+                    + outFile.getName(), e);
+        } catch (ResourceFilterException e) {
+            throw new IOException("Resource filter error while writing the translated strings to "
+                    + outFile.getName(), e);
+        }
+		boolean changed = buffer == null || store(buffer, outFile, batch, result);
+		metrics.record(StepMetrics.Phase.MERGE_WRITE, result.getBundleId(), language, System.nanoTime() - start,
+				fos.getByteCount(), 1);
+		return changed;
+	}
+
+	/**
+	 * Writes the rendered content, or hands it to the result to be added to
+	 * the batch. In write-if-changed mode, nothing is written when the output
+	 * file already has the same content, so that its timestamp is preserved
+	 * for downstream incremental builds.
+	 *
+	 * @return true if the file was written or added to the batch
+	 */
+	private boolean store(ByteArrayOutputStream buffer, FilePath outFile, OutputBatch batch,
+			LanguageExportResult result) throws IOException, InterruptedException {
+		byte[] content = buffer.toByteArray();
+		if (batch != null) {
+			if (writeIfChanged
+					&& Util.getDigestOf(new ByteArrayInputStream(content)).equals(batch.getDigest(outFile))) {
+				return false;
+			}
+			result.setOutput(outFile, content);
+			return true;
+		}
+		if (writeIfChanged && outFile.exists()
+				&& Util.getDigestOf(new ByteArrayInputStream(content)).equals(outFile.digest())) {
+			return false;
+		}
+		try (OutputStream fos = outFile.write()) {
+			fos.write(content);
+		} catch (IOException e) {
+			throw new IOException("I/O error while writing the translated strings to " + outFile.getName(), e);
+		}
+		return true;
+	}
+
+	/**
+	 * @param bundleUpdatedAt last update time of the bundle, or null if unknown
+	 * @param result where to record whether the exported values are final
+	 */
+	private LanguageBundle getBundle(ResilientServiceClient client, String bundleId, String language, String embeddedLanguageId,
+			boolean reviewedOnly, boolean withFallback, Date bundleUpdatedAt, LanguageExportResult result)
+					throws ServiceException, InterruptedException {
+		try {
+			List<TranslationCache.Entry> entries = getResourceEntries(client, bundleId, language, bundleUpdatedAt);
+			result.setTranslationComplete(isTranslationComplete(entries, reviewedOnly));
+			return toLanguageBundle(entries, embeddedLanguageId, reviewedOnly, withFallback);
+		} catch (ServiceException e) {
+			throw new ServiceException("Globalization Pipeline service error", e);
+		}
+	}
+
+	/**
+	 * Returns the resource entries of a bundle language. On the controller,
+	 * when the job enables the {@link TranslationCache}, the entries are read
+	 * from the cache if they were fetched at the same bundle update time, and
+	 * cached otherwise once their translation is complete.
+	 */
+	private List<TranslationCache.Entry> getResourceEntries(ResilientServiceClient client, String bundleId,
+			String language, Date bundleUpdatedAt) throws ServiceException, InterruptedException {
+		TranslationCache cache = bundleUpdatedAt != null ? translationCache : null;
+		if (cache == null) {
+			return TranslationCache.Entry.of(client.getResourceEntries(bundleId, language));
+		}
+		String key = TranslationCache.key(url, instanceId, bundleId, language, bundleUpdatedAt.getTime());
+		long start = System.nanoTime();
+		List<TranslationCache.Entry> entries = cache.get(key, bundleUpdatedAt.getTime());
+		if (entries != null) {
+			client.getMetrics().record(StepMetrics.Phase.CACHE_READ, bundleId, language, System.nanoTime() - start,
+					0, entries.size());
+			return entries;
+		}
+		entries = TranslationCache.Entry.of(client.getResourceEntries(bundleId, language));
+		cache.put(key, bundleUpdatedAt.getTime(), entries);
+		return entries;
+	}
+
+	/**
+	 * Returns true if no exported value can change without the bundle being
+	 * updated: all entries are translated or in the source language and, when
+	 * only reviewed values are exported, reviewed. Otherwise the export holds
+	 * missing or fallback values.
+	 */
+	static boolean isTranslationComplete(List<TranslationCache.Entry> entries, boolean reviewedOnly) {
+		for (TranslationCache.Entry entry : entries) {
+			if (!entry.isComplete()) {
+				return false;
+			}
+			if (reviewedOnly && !entry.isReviewed()
+					&& entry.getTranslationStatus() != TranslationStatus.SOURCE_LANGUAGE) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Converts the resource entries of a bundle language to the form used by
+	 * the resource filters.
+	 *
+	 * @param reviewedOnly whether to drop the values which are not reviewed
+	 * @param withFallback whether to use the source value for missing values
+	 */
+	static LanguageBundle toLanguageBundle(Map<String, ResourceEntryData> resEntries, String embeddedLanguageId,
+			boolean reviewedOnly, boolean withFallback) {
+		return toLanguageBundle(TranslationCache.Entry.of(resEntries), embeddedLanguageId, reviewedOnly, withFallback);
+	}
+
+	static LanguageBundle toLanguageBundle(List<TranslationCache.Entry> entries, String embeddedLanguageId,
+			boolean reviewedOnly, boolean withFallback) {
+		LanguageBundleBuilder bundleBuilder = new LanguageBundleBuilder(false);
+		bundleBuilder.embeddedLanguageCode(embeddedLanguageId);
+		for (TranslationCache.Entry data : entries) {
+			String key = data.getKey();
+			String resVal = data.getValue();
+			String srcVal = data.getSourceValue();
+			Integer seqNum = data.getSequenceNumber();
+			List<String> notes = data.getNotes();
+			Map<String, String> metadata = data.getMetadata();
+
+			if (reviewedOnly) {
+				if (!data.isReviewed()) {
+					resVal = null;
+				}
+			}
+
+			if (resVal == null && withFallback) {
+				resVal = data.getSourceValue();
+			}
+
+			if (resVal != null) {
+				ResourceString.Builder resb = ResourceString.with(key, resVal).sourceValue(srcVal);
+				if (seqNum != null) {
+					resb.sequenceNumber(seqNum.intValue());
+				}
+				if (notes != null) {
+					resb.notes(notes);
+				}
+				if (metadata != null) {
+					resb.metadata(metadata);
+				}
+				bundleBuilder.addResourceString(resb);
+			}
+		}
+		return bundleBuilder.build();
+	}
+
+	/**
+	 * Returns the output file of one language of a source file, according to
+	 * the bundle layout.
+	 */
+	private FilePath resolveOutputFile(SourceTemplate source, String language, FilePath outBaseDir,
+			String bundleLayout, String langIdStyle, String srcLang, Map<String, String> langMap) {
+		return source.getSourceFile().getOutputFile(outBaseDir, bundleLayout,
+				getLanguageId(language, langIdStyle, langMap), getLanguageId(srcLang, langIdStyle, langMap),
+				language.equals(srcLang));
+	}
+
+	/**
+	 * Exports one language of the bundle of a source file. The outcome, and
+	 * the state to record in the download manifest, are set to the result.
+	 * The source file is shared by the exports of all languages of the bundle
+	 * and is only read once.
+	 *
+	 * @param bundleUpdatedAt last update time of the bundle, or null if unknown
+	 * @param batch batch of the output files to transfer to the workspace, or
+	 *            null to write the output file directly
+	 */
+	private void exportLanguageResource(ResilientServiceClient client, SourceTemplate source, String language,
+			FilePath outBaseDir, String outContntOpt, String bundleLayout,
+			String langIdStyle, String srcLang, Map<String, String> langMap, Date bundleUpdatedAt,
+			OutputBatch batch, LanguageExportResult result) throws ServiceException, IOException, InterruptedException
+	{
+		PrintStream logger = result.getLogger();
+		String bundleId = source.getBundleId();
+		String type = source.getSourceFile().getType();
+		FilePath outputFile = resolveOutputFile(source, language, outBaseDir, bundleLayout, langIdStyle, srcLang, langMap);
+
+		//		if (outputFile == null) {
+		//			throw new InterruptedException("Failed to resolve output directory");
+		//		}
+
+		// The remote path avoids a call to the agent for each message in batch mode
+		String outputPath = batch != null ? outputFile.getRemote() : outputFile.toURI().getPath();
+		boolean exists = batch != null ? batch.exists(outputFile) : outputFile.exists();
+		logger.println("Exporting bundle:" + bundleId + " language:" + language + " to "
+				+ outputPath);
+
+		if (exists) {
+			if (overwrite) {
+				logger.println("The output bundle file:" + outputPath
+						+ " already exists - overwriting");
+			} else {
+				logger.println("The output bundle file:" + outputPath
+						+ " already exists - skipping");
+				// When overwrite is false, do nothing
+				return;
+			}
+		}
+
+		// Nothing to fetch when the bundle has not been updated since the file was written
+		String sourceDigest = null;
+		String settings = null;
+		boolean incremental = downloadManifest != null && bundleUpdatedAt != null;
+		if (incremental) {
+			sourceDigest = source.getDigest();
+			settings = Util.getDigestOf(outContntOpt + '\n' + type + '\n' + srcLang + '\n'
+					+ getEmbeddedLanguageId(language, langMap));
+			DownloadManifest.ExportState previous = skipRecorded ? downloadManifest.get(bundleId, language) : null;
+			if (previous != null && exists
+					&& previous.equals(new DownloadManifest.ExportState(bundleUpdatedAt.getTime(), sourceDigest,
+							settings, outputFile.getRemote(),
+							batch != null ? batch.getDigest(outputFile) : outputFile.digest(), true))) {
+				logger.println("The output bundle file:" + outputPath
+						+ " is up to date - skipping");
+				result.setState(previous);
+				return;
+			}
+		}
+
+		// In batch mode, directories are created when the batch is unpacked
+		if (batch == null && !outputFile.getParent().exists()) {
+			outputFile.getParent().mkdirs();
+		}
+
+		LanguageBundle bundle;
+		boolean changed;
+		String embeddedLangId = getEmbeddedLanguageId(language, langMap);
+
+		switch (outContntOpt) {
+		case "merge_to_src":
+			bundle = getBundle(client, bundleId, language, embeddedLangId, false, true, bundleUpdatedAt, result);
+			changed = mergeTranslation(bundle, language, getResourceType(type), source, outputFile, batch, result, client.getMetrics());
+			break;
+
+		case "trans_with_fallback":
+			bundle = getBundle(client, bundleId, language, embeddedLangId, false, true, bundleUpdatedAt, result);
+			changed = exportTranslation(bundle, language, getResourceType(type), outputFile, batch, result, client.getMetrics());
+			break;
+
+		case "trans_only":
+			bundle = getBundle(client, bundleId, language, embeddedLangId, false, false, bundleUpdatedAt, result);
+			changed = exportTranslation(bundle, language, getResourceType(type), outputFile, batch, result, client.getMetrics());
+			break;
+
+		case "merge_reviewed_to_src":
+			bundle = getBundle(client, bundleId, language, embeddedLangId, true, true, bundleUpdatedAt, result);
+			changed = mergeTranslation(bundle, language, getResourceType(type), source, outputFile, batch, result, client.getMetrics());
+			break;
+
+		case "reviewed_with_fallback":
+			bundle = getBundle(client, bundleId, language, embeddedLangId, true, true, bundleUpdatedAt, result);
+			changed = exportTranslation(bundle, language, getResourceType(type), outputFile, batch, result, client.getMetrics());
+			break;
+
+		case "reviewed_only":
+			bundle = getBundle(client, bundleId, language, embeddedLangId, true, false, bundleUpdatedAt, result);
+			changed = exportTranslation(bundle, language, getResourceType(type), outputFile, batch, result, client.getMetrics());
+			break;
+
+		default:
+			bundle = getBundle(client, bundleId, language, embeddedLangId, false, true, bundleUpdatedAt, result);
+			changed = mergeTranslation(bundle, language, getResourceType(type), source, outputFile, batch, result, client.getMetrics());
+			break;
+		}
+		result.setWritten(true);
+		result.setChanged(changed);
+		if (!changed) {
+			logger.println("The output bundle file:" + outputPath
+					+ " has the same content - not rewritten");
+		}
+		if (incremental && !result.isTranslationComplete()) {
+			// Not recorded, so that the next build fetches the language again
+			logger.println("The translation of bundle:" + bundleId + " language:" + language
+					+ " is not complete - it will be downloaded again by the next build");
+		} else if (incremental) {
+			String outputDigest;
+			if (batch == null) {
+				outputDigest = outputFile.digest();
+			} else if (result.getOutput() != null) {
+				outputDigest = Util.getDigestOf(new ByteArrayInputStream(result.getOutput()));
+			} else {
+				outputDigest = batch.getDigest(outputFile);
+			}
+			result.setState(new DownloadManifest.ExportState(bundleUpdatedAt.getTime(), sourceDigest, settings,
+					outputFile.getRemote(), outputDigest, true));
+		}
+	}
+
+
+	/**
+	 * Looks up the resource filter for the given type, making custom filters
+	 * contributed by other plugins visible to the filter factory. On an agent,
+	 * only the filters bundled with this plugin are available.
+	 *
+	 * @param onAgent whether the caller runs outside of the Jenkins controller
+	 */
+	static ResourceFilter loadResourceFilter(String type, boolean onAgent) {
+		ClassLoader orig = Thread.currentThread().getContextClassLoader();
+		try {
+			// Jenkins.getInstance() must not be called on an agent, where it fails
+			Thread.currentThread().setContextClassLoader(onAgent
+					? GlobalizationPipelineRunner.class.getClassLoader()
+					: Jenkins.getInstance().getPluginManager().uberClassLoader);
+			ServiceLoader.load(CSVFilter.class);
+			/*
+			 * (optional - only needed in case of adding your own custom filters)
+			 * ADD more custom filters as needed with your custom filter provider class
+			 * Above example uses CSV filter for example.
+			 * For e.g ServiceLoader.load(MyCustomFilter.class);
+			 */
+			return ResourceFilterFactory.getResourceFilter(type);
+		} finally {
+			Thread.currentThread().setContextClassLoader(orig);
+		}
+	}
+
+	/**
+	 * Keeps the bundle IDs that included the trailing slash of the base
+	 * directory, as computed by earlier releases, for bundles which only exist
+	 * under such an ID, so that existing jobs keep their bundles. A warning is
+	 * printed once per bundle.
+	 */
+	private static void keepLegacyBundleIds(SourceFile[] files, Set<String> bundleIds, TaskListener listener) {
+		Set<String> reported = new HashSet<String>();
+		for (SourceFile sourceFile : files) {
+			String legacyBundleId = sourceFile.getLegacyBundleId();
+			if (legacyBundleId == null || !bundleIds.contains(legacyBundleId)) {
+				continue;
+			}
+			String bundleId = sourceFile.getBundleId();
+			if (bundleIds.contains(bundleId)) {
+				if (reported.add(legacyBundleId)) {
+					listener.getLogger().println("WARNING: The bundle:" + legacyBundleId + " is no longer used, the files"
+							+ " it was created for now use the bundle:" + bundleId + ". Delete it once it is not needed.");
+				}
+				continue;
+			}
+			sourceFile.useLegacyBundleId();
+			if (reported.add(legacyBundleId)) {
+				listener.getLogger().println("WARNING: Using the bundle:" + legacyBundleId + " instead of " + bundleId
+						+ ", since it was created when bundle IDs included the trailing '/' of the base directory."
+						+ " To migrate, copy the bundle to " + bundleId + " and delete it.");
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the bundle of every file, or its legacy bundle, is in
+	 * the given bundle IDs.
+	 */
+	private static boolean hasAllBundles(SourceFile[] files, Set<String> bundleIds) {
+		for (SourceFile sourceFile : files) {
+			String legacyBundleId = sourceFile.getLegacyBundleId();
+			if (!bundleIds.contains(sourceFile.getBundleId())
+					&& (legacyBundleId == null || !bundleIds.contains(legacyBundleId))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Uploads the source files of all resource sets, grouped by bundle ID. Up to
+	 * {@link #threadPoolSize} bundles are processed concurrently.
+	 * Console output of each bundle is printed in file order, and processing
+	 * stops at the first failed bundle in that order.
+	 *
+	 * @return false if a bundle failed and the result has been set in the summary
+	 */
+	private boolean uploadBundles(Summary summary, ResilientServiceClient gpClient, Set<String> bundleIds,
+			SourceFile[] files, Set<String> targetLanguages, TaskListener listener)
+					throws IOException, InterruptedException {
+		Map<String, List<FilePath>> filesByBundle = new LinkedHashMap<String, List<FilePath>>();
+		// The resource set of a bundle is the one of its first file
+		Map<String, SourceFile> firstFiles = new HashMap<String, SourceFile>();
+		for (SourceFile sourceFile : files) {
+			String bundleId = sourceFile.getBundleId();
+			List<FilePath> bundleFiles = filesByBundle.get(bundleId);
+			if (bundleFiles == null) {
+				bundleFiles = new ArrayList<FilePath>();
+				filesByBundle.put(bundleId, bundleFiles);
+				firstFiles.put(bundleId, sourceFile);
+			}
+			bundleFiles.add(sourceFile.getFile());
+		}
+
+		if (manifest != null) {
+			manifest.retainAll(filesByBundle.keySet());
+		}
+
+		BundleInfoCache bundleInfo = new BundleInfoCache(gpClient);
+		Set<String> prefetchedBundleIds = new LinkedHashSet<String>();
+		List<FutureTask<BundleUploadResult>> tasks = new ArrayList<FutureTask<BundleUploadResult>>();
+		for (Entry<String, List<FilePath>> bundleFiles : filesByBundle.entrySet()) {
+			String bundleId = bundleFiles.getKey();
+			UploadManifest.BundleState previousState = manifest == null || !skipRecorded ? null
+					: manifest.get(bundleId);
+			// A bundle with a recorded state is probably unchanged, its information is fetched if needed
+			if (bundleIds.contains(bundleId) && previousState == null) {
+				prefetchedBundleIds.add(bundleId);
+			}
+			SourceFile firstFile = firstFiles.get(bundleId);
+			tasks.add(new FutureTask<BundleUploadResult>(new BundleUploadTask(gpClient, bundleInfo, bundleId,
+					bundleFiles.getValue(), bundleIds.contains(bundleId), firstFile.getType(), srcLang,
+					targetLanguages, firstFile.getBaseDirectory(), manifest != null, previousState, deltaUpload,
+					deleteRemovedKeys, uploadChunkSize, uploadChunkBytes, onAgent)));
+		}
+
+		int poolSize = Math.min(threadPoolSize, tasks.size());
+		ExecutorService executor = useVirtualThreads() && tasks.size() > 1
+				? WorkerPools.newVirtualThreadPool("upload", poolSize) : null;
+		if (executor != null) {
+			listener.getLogger().println("Uploading " + tasks.size() + " bundle(s) using virtual threads, "
+					+ poolSize + " at once");
+		} else if (poolSize > 1) {
+			listener.getLogger().println("Uploading " + tasks.size() + " bundle(s) using " + poolSize + " threads");
+			executor = WorkerPools.newPool("upload", poolSize);
+		}
+		if (executor != null) {
+			// Bundle data is fetched ahead of the upload tasks, which are queued behind
+			bundleInfo.prefetch(prefetchedBundleIds, executor);
+			for (FutureTask<BundleUploadResult> task : tasks) {
+				executor.execute(task);
+			}
+		}
+
+		int createdBundles = 0;
+		int skippedBundles = 0;
+		int uploadedEntries = 0;
+		try {
+			for (FutureTask<BundleUploadResult> task : tasks) {
+				if (executor == null) {
+					task.run();
+				}
+				BundleUploadResult result = getTaskResult(task);
+				listener.getLogger().print(result.getLog());
+				if (manifest != null) {
+					if (result.getState() == null) {
+						manifest.remove(result.getBundleId());
+					} else {
+						manifest.put(result.getBundleId(), result.getState());
+					}
+					saveProgress(listener);
+				}
+				if (result.isFailed()) {
+					summary.finish(result.getFailure());
+					return false;
+				}
+				if (result.isCreated()) {
+					createdBundles++;
+				}
+				if (result.isSkipped()) {
+					skippedBundles++;
+				}
+				uploadedEntries += result.getEntriesUploaded();
+			}
+		} finally {
+			// Stops bundles still in flight after a failure or an abort
+			for (FutureTask<BundleUploadResult> task : tasks) {
+				task.cancel(true);
+			}
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+
+		listener.getLogger().println("Upload summary: " + tasks.size() + " bundle(s) processed, "
+				+ createdBundles + " created, " + skippedBundles + " unchanged, "
+				+ uploadedEntries + " resource entries uploaded");
+		return true;
+	}
+
+	/**
+	 * Exports the translated bundles of the source files to the output
+	 * directory. Each (bundle, language) pair is exported by its own task, and
+	 * up to {@link #threadPoolSize} tasks run concurrently, after the bundle
+	 * information of all bundles has been prefetched on the same pool.
+	 * Console output is printed in file and language order, and processing
+	 * stops at the first failure in that order. In batch mode, the output
+	 * files are sent to the remote workspace in one {@link OutputBatch} once
+	 * all exports are done.
+	 *
+	 * @return false if a bundle failed and the result has been set in the summary
+	 */
+	private boolean downloadBundles(Summary summary, ResilientServiceClient gpClient, Set<String> bundleIds,
+			SourceFile[] files, FilePath outDirectory, Set<String> langMapTargetLanguages,
+			Map<String, String> langMappingMap, TaskListener listener) throws IOException, InterruptedException {
+		String[] fileBundleIds = new String[files.length];
+		SourceTemplate[] sources = new SourceTemplate[files.length];
+		Set<String> existingBundleIds = new LinkedHashSet<String>();
+		for (int i = 0; i < files.length; i++) {
+			fileBundleIds[i] = files[i].getBundleId();
+			// Read by the first export needing it, released after the last one
+			sources[i] = new SourceTemplate(files[i]);
+			if (bundleIds.contains(fileBundleIds[i])) {
+				existingBundleIds.add(fileBundleIds[i]);
+			}
+		}
+
+		// Existing output files are looked up in one call, and written in one transfer
+		OutputBatch batch = null;
+		if (batchOutput && outDirectory.isRemote()) {
+			List<FilePath> candidates = new ArrayList<FilePath>();
+			for (int i = 0; i < files.length; i++) {
+				if (!existingBundleIds.contains(fileBundleIds[i])) {
+					continue;
+				}
+				if (outputSourceLang) {
+					candidates.add(resolveOutputFile(sources[i], srcLang, outDirectory, files[i].getBundleLayout(),
+							languageIdStyle, srcLang, langMappingMap));
+				}
+				for (String tgtLang : langMapTargetLanguages) {
+					candidates.add(resolveOutputFile(sources[i], tgtLang, outDirectory, files[i].getBundleLayout(),
+							languageIdStyle, srcLang, langMappingMap));
+				}
+			}
+			listener.getLogger().println("Output files are transferred to the workspace in one archive");
+			batch = OutputBatch.open(outDirectory, candidates, writeIfChanged || downloadManifest != null);
+		}
+
+		BundleInfoCache bundleInfo = new BundleInfoCache(gpClient);
+		int exports = existingBundleIds.size() * (langMapTargetLanguages.size() + (outputSourceLang ? 1 : 0));
+		int poolSize = Math.min(threadPoolSize, exports);
+		ExecutorService executor = useVirtualThreads() && exports > 1
+				? WorkerPools.newVirtualThreadPool("download", poolSize) : null;
+		if (executor != null) {
+			listener.getLogger().println("Downloading " + existingBundleIds.size()
+					+ " bundle(s) using virtual threads, " + poolSize + " exports at once");
+		} else if (poolSize > 1) {
+			listener.getLogger().println("Downloading " + existingBundleIds.size()
+					+ " bundle(s) using " + poolSize + " threads");
+			executor = WorkerPools.newPool("download", poolSize);
+		}
+
+		// Results in console order; messages printed between exports are completed results
+		List<Future<? extends BufferedResult>> results = new ArrayList<Future<? extends BufferedResult>>();
+		int written = 0;
+		int changed = 0;
+		int unchanged = 0;
+		int skipped = 0;
+		boolean failed = false;
+		if (downloadManifest != null) {
+			downloadManifest.retainAll(new HashSet<String>(Arrays.asList(fileBundleIds)));
+		}
+		try {
+			bundleInfo.prefetch(existingBundleIds, executor);
+
+			for (int i = 0; i < files.length; i++) {
+				SourceTemplate source = sources[i];
+				// Only referenced by the export tasks from now on
+				sources[i] = null;
+				String bundleId = fileBundleIds[i];
+				BufferedResult bundleResult = new BufferedResult();
+				results.add(CompletableFuture.completedFuture(bundleResult));
+				if (!bundleIds.contains(bundleId)) {
+					bundleResult.getLogger().println("The bundle:" + bundleId + " does not exist.");
+					continue;
+				}
+
+				BundleData bdlData = null;
+				try {
+					bdlData = bundleInfo.get(bundleId);
+				} catch (ServiceException e) {
+					bundleResult.fail(Result.UNSTABLE, "Failed to get bundle data for " + bundleId + " : " + e.getMessage());
+					break;
+				}
+
+				String bdlSrcLang = bdlData.getSourceLanguage();
+				Set<String> bdlTrgLangs = bdlData.getTargetLanguages();
+				Set<String> bdlLangs = new HashSet<String>();
+				bdlLangs.add(bdlSrcLang);
+				if (bdlTrgLangs != null) {
+					bdlLangs.addAll(bdlData.getTargetLanguages());
+				}
+
+				if (!srcLang.equals(bdlSrcLang)) {
+					bundleResult.getLogger().println("The source language of the bundle:" + bundleId
+							+ " (" + bdlSrcLang + ") is different from the language specified by the configuration ("
+							+ srcLang + ")");
+
+				}
+
+				if (outputSourceLang) {
+					if (bdlLangs.contains(srcLang)) {
+						results.add(scheduleExport(executor, gpClient, source, srcLang, outDirectory, langMappingMap,
+								bdlData.getUpdatedAt(), batch));
+					} else {
+						results.add(message("The specified source language (" + srcLang
+								+ ") does not exist in the bundle:" + bundleId));
+					}
+				}
+
+				for (String tgtLang: langMapTargetLanguages) {
+					if (bdlLangs.contains(tgtLang)) {
+						results.add(scheduleExport(executor, gpClient, source, tgtLang, outDirectory, langMappingMap,
+								bdlData.getUpdatedAt(), batch));
+					} else {
+						results.add(message("The specified target language (" + tgtLang
+								+ ") does not exist in the bundle:" + bundleId));
+					}
+				}
+			}
+
+			for (Future<? extends BufferedResult> future : results) {
+				if (executor == null && future instanceof FutureTask) {
+					((FutureTask<?>) future).run();
+				}
+				BufferedResult result = getTaskResult(future);
+				listener.getLogger().print(result.getLog());
+				if (result.isFailed()) {
+					summary.finish(result.getFailure());
+					// Files exported before the failure are still written, as without a batch
+					failed = true;
+					break;
+				}
+				if (result instanceof LanguageExportResult) {
+					LanguageExportResult exportResult = (LanguageExportResult) result;
+					if (downloadManifest != null) {
+						if (exportResult.getState() == null) {
+							downloadManifest.remove(exportResult.getBundleId(), exportResult.getLanguage());
+						} else {
+							downloadManifest.put(exportResult.getBundleId(), exportResult.getLanguage(),
+									exportResult.getState());
+						}
+						saveProgress(listener);
+					}
+					if (exportResult.getOutput() != null) {
+						batch.add(exportResult.getOutputFile(), exportResult.getOutput());
+						// The batch spools the content to disk, the result no longer needs it
+						exportResult.setOutput(null, null);
+					}
+					if (exportResult.isWritten()) {
+						written++;
+						if (exportResult.isChanged()) {
+							changed++;
+						}
+					} else if (exportResult.getState() != null) {
+						unchanged++;
+					} else {
+						skipped++;
+					}
+				}
+			}
+		} catch (IOException | InterruptedException | RuntimeException | Error e) {
+			if (batch != null) {
+				batch.close();
+			}
+			throw e;
+		} finally {
+			// Stops exports still in flight after a failure or an abort
+			for (Future<? extends BufferedResult> future : results) {
+				future.cancel(true);
+			}
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+
+		if (batch != null && batch.getFileCount() > 0) {
+			listener.getLogger().println("Transferring " + batch.getFileCount() + " output file(s) ("
+					+ (batch.getSize() + 1023) / 1024 + " KB) to the workspace");
+			Map<String, OutputBatch.Outcome> outcomes;
+			try {
+				outcomes = batch.commit(overwrite, writeIfChanged);
+			} finally {
+				batch.close();
+			}
+			// The agent checks the files again, they may have changed during the export
+			for (Entry<String, OutputBatch.Outcome> outcome : outcomes.entrySet()) {
+				switch (outcome.getValue()) {
+				case SKIPPED:
+					listener.getLogger().println("The output bundle file:" + outcome.getKey()
+							+ " was created during the export - skipping");
+					written--;
+					changed--;
+					skipped++;
+					break;
+				case UNCHANGED:
+					listener.getLogger().println("The output bundle file:" + outcome.getKey()
+							+ " has the same content - not rewritten");
+					changed--;
+					break;
+				default:
+					break;
+				}
+			}
+		}
+		if (failed) {
+			return false;
+		}
+
+		listener.getLogger().println("Download summary: " + written + " file(s) exported"
+				+ (writeIfChanged ? " (" + changed + " changed)" : "") + ", "
+				+ (downloadManifest != null ? unchanged + " unchanged, " : "")
+				+ skipped + " existing file(s) skipped");
+		return true;
+	}
+
+	/**
+	 * Creates the export task of one language of a bundle, and starts it on
+	 * the executor if there is one. Without an executor, the task is run when
+	 * its result is printed.
+	 */
+	private FutureTask<LanguageExportResult> scheduleExport(ExecutorService executor,
+			final ResilientServiceClient gpClient, final SourceTemplate source, final String language,
+			final FilePath outDirectory, final Map<String, String> langMappingMap, final Date bundleUpdatedAt,
+			final OutputBatch batch) {
+		FutureTask<LanguageExportResult> task = new FutureTask<LanguageExportResult>(() -> {
+			String bundleId = source.getBundleId();
+			LanguageExportResult result = new LanguageExportResult(bundleId, language);
+			try {
+				exportLanguageResource(gpClient, source, language, outDirectory,
+						outputContentOption, source.getSourceFile().getBundleLayout(), languageIdStyle, srcLang, langMappingMap,
+						bundleUpdatedAt, batch, result);
+			} catch (ServiceException e) {
+				result.fail(Result.UNSTABLE, "Failed to export language resource " + bundleId + " : " + e.getMessage());
+			}
+			return result;
+		});
+		if (executor != null) {
+			executor.execute(task);
+		}
+		return task;
+	}
+
+	private static Future<BufferedResult> message(String message) {
+		BufferedResult result = new BufferedResult();
+		result.getLogger().println(message);
+		return CompletableFuture.completedFuture(result);
+	}
+
+	/**
+	 * Waits for a worker task and rethrows the exception it failed with.
+	 */
+	static <T> T getTaskResult(Future<T> task) throws IOException, InterruptedException {
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof InterruptedException) {
+				throw (InterruptedException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Runs the goal against the workspace. The configuration has already been
+	 * checked for null values by the build step.
+	 *
+	 * @param onAgent whether the goal runs outside of the Jenkins controller,
+	 *            where the plugins and the root directory of Jenkins are not available
+	 */
+	Summary execute(FilePath workspace, TaskListener listener, boolean onAgent) throws IOException, InterruptedException {
+		this.onAgent = onAgent;
+		this.translationCache = onAgent || !cacheTranslations ? null
+				: TranslationCache.get(Jenkins.getInstance().getRootDir());
+		Summary summary = new Summary(new StepMetrics(goalType));
+		try {
+			return execute(summary, workspace, listener);
+		} finally {
+			summary.metrics.finish();
+		}
+	}
+
+	private Summary execute(Summary summary, FilePath workspace, TaskListener listener)
+			throws IOException, InterruptedException {
+		StepMetrics metrics = summary.metrics;
+		summary.manifest = manifest;
+		summary.downloadManifest = downloadManifest;
+
+		// All global variables
+		JsonParser jsonParser = new JsonParser(); // JsonParser to parse langMap
+		JsonElement parsedLangMap = null; // Parsed json element from string langMap
+		JsonObject langMapObject = null; // Object represention of parsed langMap
+		Set<String> langMapTargetLanguages = new HashSet<String>(); // fetching targetLanguages from langMap
+		SourceFile[] files = null; // files from the base directories after applying include/exclude rules
+		Set<String> bundleIds;// = new HashSet<String>();
+		Map<String, String> langMappingMap = new HashMap<String, String>();
+		Map<String, ResourceFilter> filters = new LinkedHashMap<String, ResourceFilter>(); // filter of each resource type
+
+
+		// CHECKING CREDENTIALS
+		if(url.trim().equals("") || instanceId.trim().equals("") || userId.trim().equals("") || Secret.toString(password).trim().equals("")){
+			listener.getLogger().println("Empty credentials.. Please enter IBM Globalization Pipeline credentials (Instance id, url, username, password).");
+			return summary.finish(Result.UNSTABLE);
+		}
+		ServiceClientRegistry.Registration registration = ServiceClientRegistry.get(
+				url, instanceId, userId, Secret.toString(password));
+		BundleIdIndex bundleIndex = registration.getBundleIndex();
+		long startedAt = System.currentTimeMillis();
+		if (virtualThreads && !useVirtualThreads()) {
+			listener.getLogger().println("Virtual threads require Java 21 or later, or Java 19 or 20 with preview"
+					+ " features enabled, using " + threadPoolSize + " platform threads");
+		}
+		ResilientServiceClient gpClient = new ResilientServiceClient(registration.getClient(), registration,
+				maxRetries, threadPoolSize, threadPoolSize, listener.getLogger(), metrics);
+		long checkStart = System.nanoTime();
+		try{
+			// Listing the bundles verifies the credentials and refreshes the index used by the goal
+			if (!registration.verify(gpClient::getBundleIds, false)) {
+				listener.getLogger().println("Credentials verified recently, skipping the check");
+			}
+		}catch(ServiceException e){
+			listener.getLogger().println("Invalid credentials.. Please enter valid IBM Globalization Pipeline credentials (Instance id, url, username, password).");
+			return summary.finish(Result.UNSTABLE);
+		}finally{
+			metrics.record(StepMetrics.Phase.CREDENTIAL_CHECK, System.nanoTime() - checkStart, 0, 0);
+		}
+
+
+
+		// CHECKING PATHS
+		for (ResourceSet resourceSet : resourceSets) {
+			String baseDir = resourceSet.getBaseDir();
+			String includeRule = resourceSet.getIncludeRule();
+			if(baseDir.trim().equals("") || includeRule.trim().equals("")){
+				listener.getLogger().println("Empty Base Directory or include/exclude rules. Please check again.");
+				return summary.finish(Result.UNSTABLE);
+			}
+			if(resourceSet.getExcludeRule().trim().equals(includeRule.trim())){
+				listener.getLogger().println("Base Directory " + baseDir + " exists.. But you provided same include and exclude rule. i.e no files to consider.");
+				return summary.finish(Result.UNSTABLE);
+			}
+		}
+		// One call to the agent walks the base directories of all resource sets,
+		// each walk evaluating both rules
+		long scanStart = System.nanoTime();
+		List<WorkspaceScanner.Result> scans = WorkspaceScanner.scan(workspace, resourceSets);
+		int numberOfFiles = 0;
+		for (WorkspaceScanner.Result scan : scans) {
+			numberOfFiles += scan == null ? 0 : scan.getFileCount();
+		}
+		metrics.record(StepMetrics.Phase.WORKSPACE_SCAN, System.nanoTime() - scanStart, 0, numberOfFiles);
+		List<SourceFile> allFiles = new ArrayList<SourceFile>(numberOfFiles);
+		// Index of the resource set of each bundle, since a bundle has a single resource type
+		Map<String, Integer> bundleSets = new HashMap<String, Integer>();
+		for (int i = 0; i < resourceSets.size(); i++) {
+			ResourceSet resourceSet = resourceSets.get(i);
+			String baseDir = resourceSet.getBaseDir();
+			WorkspaceScanner.Result scan = scans.get(i);
+			if(scan == null){
+				listener.getLogger().println("Base Directory " + baseDir + " not present in workspace. Please check again.");
+				return summary.finish(Result.UNSTABLE);
+			}
+			SourceFile[] setFiles = SourceFile.resolve(workspace.child(baseDir.trim()), baseDir, scan.getFiles(),
+					resourceSet.getType(), resourceSet.getBundleLayout());
+			if(setFiles.length == 0 && !scan.hasExclusions()){
+				listener.getLogger().println("Base Directory " + baseDir + " exists.. But include rules gives 0 files. i.e no files to consider.");
+				return summary.finish(Result.UNSTABLE);
+			}
+			if(setFiles.length == 0){
+				listener.getLogger().println("Base Directory " + baseDir + " exists.. But exclude rule removed all files in include rule. i.e no files to consider.");
+				return summary.finish(Result.UNSTABLE);
+			}
+			for (SourceFile sourceFile : setFiles) {
+				Integer other = bundleSets.put(sourceFile.getBundleId(), Integer.valueOf(i));
+				if (other != null && other.intValue() != i) {
+					listener.getLogger().println("The bundle:" + sourceFile.getBundleId() + " is selected by more than one resource set. Please check again.");
+					return summary.finish(Result.UNSTABLE);
+				}
+			}
+			if (resourceSets.size() > 1) {
+				listener.getLogger().println("Resource set " + (i + 1) + " : " + baseDir + " (" + resourceSet.getType() + ")");
+			}
+			listener.getLogger().println("Considering files ... with include rule:" + resourceSet.getIncludeRule() + " and exclude rule:" + resourceSet.getExcludeRule());
+			listener.getLogger().println(printFilesConsidered(setFiles));
+			allFiles.addAll(Arrays.asList(setFiles));
+		}
+		files = allFiles.toArray(new SourceFile[allFiles.size()]);
+
+		//CHECKING Source Language
+		if(srcLang.trim().equals("")){
+			listener.getLogger().println("Please enter source language");
+			return summary.finish(Result.UNSTABLE);
+		}
+
+		// CHECKING LANGUAGES AND MAPPING
+		if(langMap.trim().equals("")){
+			listener.getLogger().println("Please enter atleast one target language");
+			return summary.finish(Result.UNSTABLE);
+		}
+		try
+		{
+			parsedLangMap = jsonParser.parse(langMap.trim());
+			langMapObject = parsedLangMap.getAsJsonObject();
+			for(Entry<String, JsonElement> langMapEntry : langMapObject.entrySet()){
+				langMapTargetLanguages.add(langMapEntry.getKey());
+				if(langMapEntry.getValue().getAsString().equals("")){
+					listener.getLogger().println("Please enter non-empty language mapping for target langugage: " + langMapEntry.getKey());
+					return summary.finish(Result.UNSTABLE);
+				}
+				langMappingMap.put(langMapEntry.getKey(), langMapEntry.getValue().getAsString());
+			}
+			if(langMapTargetLanguages.size() == 0){
+				listener.getLogger().println("Please enter atleast one target language");
+				return summary.finish(Result.UNSTABLE);
+			}
+
+
+		}catch(JsonParseException jp){
+			listener.getLogger().println("Invalid Json input of Language Map. Please enter valid json form");
+			return summary.finish(Result.UNSTABLE);
+		}catch(Exception e){
+			listener.getLogger().println("Exception error: " + e.getMessage());
+			return summary.finish(Result.FAILURE);
+		}
+
+
+		//CHECKING OUTPUT DIRECTORY
+		if(outDir.trim().equals("")){
+			listener.getLogger().println("Empty Output Directory. If you chose download goal, then this build will use/create ./target/classes in workspace");
+		}
+		if(!workspace.child(outDir.trim()).exists()){
+			listener.getLogger().println("Output Directory does not exist in workspace. If you chose download goal, then this build will create " + outDir.trim() +" in workspace");
+		}
+		else if(!workspace.child(outDir.trim()).isDirectory()){
+			listener.getLogger().println("Please enter Output Directory, not files");
+			return summary.finish(Result.FAILURE);
+		}
+		
+		
+		// Serviceloader for any custom filters (optional)
+		long filterStart = System.nanoTime();
+		try{
+			for (ResourceSet resourceSet : resourceSets) {
+				if (!filters.containsKey(resourceSet.getType())) {
+					filters.put(resourceSet.getType(), loadResourceFilter(resourceSet.getType(), onAgent));
+				}
+			}
+		}
+		catch (NullPointerException e) {
+			listener.getLogger().println("Globalization Pipeline exception : " + e.getMessage());
+			return summary.finish(Result.UNSTABLE);
+		}
+		finally {
+			metrics.record(StepMetrics.Phase.FILTER_LOADING, System.nanoTime() - filterStart, 0, filters.size());
+		}
+		
+		// UPLOAD
+		if(goalType.equals("upload")){
+			try {
+				bundleIds = bundleIndex.get(gpClient::getBundleIds);
+				keepLegacyBundleIds(files, bundleIds, listener);
+
+
+				for (Entry<String, ResourceFilter> filter : filters.entrySet()) {
+					if (filter.getValue() == null) {
+						throw new IOException("Resource filter for " + filter.getKey() + " is not available.");
+					}
+				}
+
+				// Process each bundle
+				if (!uploadBundles(summary, gpClient, bundleIds, files, langMapTargetLanguages, listener)) {
+					return summary;
+				}
+
+			} catch (ServiceException | NullPointerException e) {
+				listener.getLogger().println("Globalization Pipeline exception : " + e.getMessage());
+				// Verify the credentials again on the next build
+				registration.invalidate();
+				return summary.finish(Result.UNSTABLE);
+			} finally {
+				listener.getLogger().println(gpClient.getStatistics());
+			}
+		}
+
+
+
+		// DOWNLOAD
+		if(goalType.equals("download")){
+
+			// IF outDir does not exist, create target/classes
+			FilePath outDirectory = null;
+			if (outDir == null) {
+				outDirectory = new FilePath(workspace, "target/classes");
+			}
+			else if(outDir.trim().equals("")){
+				listener.getLogger().println("Empty Output Directory. so checking if ./target/classes exists in workspace");
+				outDirectory = new FilePath(workspace, "target/classes");
+				if(!workspace.child("target/classes").exists()){
+					listener.getLogger().println("./target/classes does not exists in workspace, so creating it");
+					outDirectory.mkdirs();
+				}
+				else{
+					listener.getLogger().println("./target/classes exists in workspace");
+				}
+			}
+			else{
+				outDirectory = new FilePath(workspace, outDir);
+			}
+
+
+			try {
+				try {
+					bundleIds = bundleIndex.get(gpClient::getBundleIds);
+					if (!bundleIndex.isLoadedSince(startedAt) && !hasAllBundles(files, bundleIds)) {
+						// The bundles may have been created after the listing was taken, by another build
+						bundleIds = bundleIndex.refresh(gpClient::getBundleIds);
+					}
+				} catch (ServiceException e1) {
+					listener.getLogger().println("Failed fetching bundles : " + e1.getMessage());
+					registration.invalidate();
+					return summary.finish(Result.UNSTABLE);
+				}
+				keepLegacyBundleIds(files, bundleIds, listener);
+				// Process each bundle
+				if (!downloadBundles(summary, gpClient, bundleIds, files, outDirectory,
+						langMapTargetLanguages, langMappingMap, listener)) {
+					return summary;
+				}
+			} finally {
+				listener.getLogger().println(gpClient.getStatistics());
+			}
+		}
+
+
+		listener.getLogger().println("*************** IBM GLOBALIZATION PIPELINE BUILDSTEP Done!! ***************");
+
+		return summary;
+	}
+}
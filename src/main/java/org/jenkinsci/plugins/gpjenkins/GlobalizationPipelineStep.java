@@ -0,0 +1,370 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Inject;
+
+import org.jenkinsci.plugins.workflow.steps.AbstractStepDescriptorImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepExecutionImpl;
+import org.jenkinsci.plugins.workflow.steps.AbstractStepImpl;
+import org.jenkinsci.plugins.workflow.steps.StepContextParameter;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.model.Computer;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.util.Secret;
+
+/**
+ * Pipeline step running the upload or download goal, with the same parameters
+ * as {@link GlobalizationPipelineBuilder}:
+ *
+ * <pre>
+ * node {
+ *     globalizationPipeline instanceId: '...', url: '...', userId: '...', password: '...',
+ *         goalType: 'download', baseDir: 'src/main/resources', includeRule: '**&#47;*.properties', ...
+ * }
+ * </pre>
+ *
+ * <p>
+ * The step execution is asynchronous: the goal runs on a thread of the plugin
+ * and completes the step when it is done, so the CPS VM thread of the
+ * Pipeline is not held while the step waits for the service. The executor of
+ * the enclosing {@code node} block is still used, since the goal needs the
+ * workspace.
+ *
+ * <p>
+ * When the controller restarts while the step is running, the goal is run
+ * again. With the incremental upload or download enabled, the bundles recorded
+ * in the job manifests by previous runs are skipped.
+ *
+ * <p>
+ * The step is only available when the Pipeline plugins are installed.
+ */
+public final class GlobalizationPipelineStep extends AbstractStepImpl {
+
+	private final GlobalizationPipelineBuilder builder;
+
+	@DataBoundConstructor
+	public GlobalizationPipelineStep(String instanceId, String url, String userId, Secret password, String goalType, String baseDir, String includeRule, String excludeRule, String srcLang, String type, String langMap, String languageIdStyle, Boolean outputSourceLang, String outputContentOption, String bundleLayout, String outDir, Boolean overwrite) {
+		this.builder = new GlobalizationPipelineBuilder(instanceId, url, userId, password, goalType, baseDir, includeRule, excludeRule, srcLang, type, langMap, languageIdStyle, outputSourceLang, outputContentOption, bundleLayout, outDir, overwrite);
+	}
+
+	GlobalizationPipelineBuilder getBuilder() {
+		return builder;
+	}
+
+	public String getInstanceId() {
+		return builder.getInstanceId();
+	}
+
+	public String getUrl() {
+		return builder.getUrl();
+	}
+
+	public String getUserId() {
+		return builder.getUserId();
+	}
+
+	public Secret getPassword() {
+		return builder.getPassword();
+	}
+
+	public String getGoalType() {
+		return builder.getGoalType();
+	}
+
+	public String getBaseDir() {
+		return builder.getBaseDir();
+	}
+
+	public String getIncludeRule() {
+		return builder.getIncludeRule();
+	}
+
+	public String getExcludeRule() {
+		return builder.getExcludeRule();
+	}
+
+	public String getSrcLang() {
+		return builder.getSrcLang();
+	}
+
+	public String getType() {
+		return builder.getType();
+	}
+
+	public String getLangMap() {
+		return builder.getLangMap();
+	}
+
+	public String getLanguageIdStyle() {
+		return builder.getLanguageIdStyle();
+	}
+
+	public Boolean getOutputSourceLang() {
+		return builder.getOutputSourceLang();
+	}
+
+	public String getOutputContentOption() {
+		return builder.getOutputContentOption();
+	}
+
+	public String getBundleLayout() {
+		return builder.getBundleLayout();
+	}
+
+	public String getOutDir() {
+		return builder.getOutDir();
+	}
+
+	public Boolean getOverwrite() {
+		return builder.getOverwrite();
+	}
+
+	public Integer getThreadPoolSize() {
+		return builder.getThreadPoolSize();
+	}
+
+	@DataBoundSetter
+	public void setThreadPoolSize(Integer threadPoolSize) {
+		builder.setThreadPoolSize(threadPoolSize);
+	}
+
+	public Boolean getIncrementalUpload() {
+		return builder.getIncrementalUpload();
+	}
+
+	@DataBoundSetter
+	public void setIncrementalUpload(Boolean incrementalUpload) {
+		builder.setIncrementalUpload(incrementalUpload);
+	}
+
+	public Boolean getDeltaUpload() {
+		return builder.getDeltaUpload();
+	}
+
+	@DataBoundSetter
+	public void setDeltaUpload(Boolean deltaUpload) {
+		builder.setDeltaUpload(deltaUpload);
+	}
+
+	public Boolean getDeleteRemovedKeys() {
+		return builder.getDeleteRemovedKeys();
+	}
+
+	@DataBoundSetter
+	public void setDeleteRemovedKeys(Boolean deleteRemovedKeys) {
+		builder.setDeleteRemovedKeys(deleteRemovedKeys);
+	}
+
+	public Boolean getRunOnAgent() {
+		return builder.getRunOnAgent();
+	}
+
+	@DataBoundSetter
+	public void setRunOnAgent(Boolean runOnAgent) {
+		builder.setRunOnAgent(runOnAgent);
+	}
+
+	public Integer getUploadChunkSize() {
+		return builder.getUploadChunkSize();
+	}
+
+	@DataBoundSetter
+	public void setUploadChunkSize(Integer uploadChunkSize) {
+		builder.setUploadChunkSize(uploadChunkSize);
+	}
+
+	public Integer getUploadChunkKilobytes() {
+		return builder.getUploadChunkKilobytes();
+	}
+
+	@DataBoundSetter
+	public void setUploadChunkKilobytes(Integer uploadChunkKilobytes) {
+		builder.setUploadChunkKilobytes(uploadChunkKilobytes);
+	}
+
+	public Integer getMaxRetries() {
+		return builder.getMaxRetries();
+	}
+
+	@DataBoundSetter
+	public void setMaxRetries(Integer maxRetries) {
+		builder.setMaxRetries(maxRetries);
+	}
+
+	public Boolean getIncrementalDownload() {
+		return builder.getIncrementalDownload();
+	}
+
+	@DataBoundSetter
+	public void setIncrementalDownload(Boolean incrementalDownload) {
+		builder.setIncrementalDownload(incrementalDownload);
+	}
+
+	public Boolean getWriteIfChanged() {
+		return builder.getWriteIfChanged();
+	}
+
+	@DataBoundSetter
+	public void setWriteIfChanged(Boolean writeIfChanged) {
+		builder.setWriteIfChanged(writeIfChanged);
+	}
+
+	public Boolean getBatchOutput() {
+		return builder.getBatchOutput();
+	}
+
+	@DataBoundSetter
+	public void setBatchOutput(Boolean batchOutput) {
+		builder.setBatchOutput(batchOutput);
+	}
+
+	public Boolean getVirtualThreads() {
+		return builder.getVirtualThreads();
+	}
+
+	@DataBoundSetter
+	public void setVirtualThreads(Boolean virtualThreads) {
+		builder.setVirtualThreads(virtualThreads);
+	}
+
+	public Boolean getCacheTranslations() {
+		return builder.getCacheTranslations();
+	}
+
+	@DataBoundSetter
+	public void setCacheTranslations(Boolean cacheTranslations) {
+		builder.setCacheTranslations(cacheTranslations);
+	}
+
+	public List<ResourceSet> getResourceSets() {
+		return builder.getResourceSets();
+	}
+
+	@DataBoundSetter
+	public void setResourceSets(List<ResourceSet> resourceSets) {
+		builder.setResourceSets(resourceSets);
+	}
+
+	/**
+	 * Runs the goal on the thread pool Jenkins keeps for remote calls, which
+	 * it manages and shuts down itself, and completes the step from there.
+	 * The manifests record the bundles done as the goal progresses, so that the
+	 * goal resumed after a restart skips them.
+	 */
+	public static final class Execution extends AbstractStepExecutionImpl {
+
+		private static final long serialVersionUID = 1L;
+
+		@Inject
+		private transient GlobalizationPipelineStep step;
+		@StepContextParameter
+		private transient Run<?, ?> run;
+		@StepContextParameter
+		private transient FilePath workspace;
+		@StepContextParameter
+		private transient Launcher launcher;
+		@StepContextParameter
+		private transient TaskListener listener;
+
+		// Copied from the step, which is not available after a restart
+		private GlobalizationPipelineBuilder builder;
+		private transient volatile Future<?> task;
+		/** Set by whichever of the goal and {@link #stop} completes the context first */
+		private transient volatile AtomicBoolean completed;
+
+		@Override
+		public boolean start() throws Exception {
+			builder = step.getBuilder();
+			submit(false);
+			return false;
+		}
+
+		@Override
+		public void onResume() {
+			super.onResume();
+			listener.getLogger().println("Jenkins restarted while the Globalization Pipeline step was running,"
+					+ " resuming it - the bundles done before the restart are skipped");
+			submit(true);
+		}
+
+		@Override
+		public void stop(Throwable cause) throws Exception {
+			Future<?> running = task;
+			if (running != null) {
+				running.cancel(true);
+			}
+			complete(cause);
+		}
+
+		private void submit(boolean resumed) {
+			completed = new AtomicBoolean();
+			task = Computer.threadPoolForRemoting.submit(() -> {
+				try {
+					builder.perform(run, workspace, launcher, listener, true, resumed);
+					complete(null);
+				} catch (Throwable t) {
+					complete(t);
+				}
+			});
+		}
+
+		/**
+		 * Completes the context, unless it is already completed: the goal
+		 * interrupted by {@link #stop} fails as well.
+		 */
+		private void complete(Throwable failure) {
+			AtomicBoolean done = completed;
+			if (done != null && !done.compareAndSet(false, true)) {
+				return;
+			}
+			if (failure == null) {
+				getContext().onSuccess(null);
+			} else {
+				getContext().onFailure(failure);
+			}
+		}
+	}
+
+	@Extension(optional = true)
+	public static final class DescriptorImpl extends AbstractStepDescriptorImpl {
+
+		public DescriptorImpl() {
+			super(Execution.class);
+		}
+
+		@Override
+		public String getFunctionName() {
+			return "globalizationPipeline";
+		}
+
+		@Override
+		public String getDisplayName() {
+			return "IBM Globalization Pipeline";
+		}
+	}
+}
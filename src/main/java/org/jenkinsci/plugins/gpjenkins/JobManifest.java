@@ -0,0 +1,122 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import hudson.Util;
+
+/**
+ * State kept in the job directory between builds, stored as JSON.
+ *
+ * <p>
+ * Each build step configuration (service instance, base directory, rules,
+ * type and source language) has its own manifest file, so several build steps
+ * in the same job never see each other's state. A manifest is loaded and saved
+ * on the controller; when the goal runs on an agent, it travels there and back
+ * with the build step, and the copy sent back is saved.
+ */
+abstract class JobManifest implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	static final String DIR_NAME = "ibm-g11n-pipeline";
+
+	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+	/**
+	 * Returns the manifest file for the given build step configuration.
+	 *
+	 * @param rootDir the job directory
+	 * @param prefix the kind of manifest
+	 * @param configKeys values identifying the build step configuration
+	 */
+	static File locate(File rootDir, String prefix, String... configKeys) {
+		StringBuilder key = new StringBuilder();
+		for (String configKey : configKeys) {
+			key.append(configKey == null ? "" : configKey.trim()).append('\n');
+		}
+		return new File(new File(rootDir, DIR_NAME), prefix + "-" + Util.getDigestOf(key.toString()) + ".json");
+	}
+
+	/**
+	 * Loads the manifest from the file. A missing or unreadable file results in
+	 * an empty manifest.
+	 */
+	static <T extends JobManifest> T load(File file, Class<T> type) {
+		T manifest = null;
+		if (file.isFile()) {
+			try (Reader reader = new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8)) {
+				manifest = GSON.fromJson(reader, type);
+			} catch (IOException | JsonParseException e) {
+				manifest = null;
+			}
+		}
+		if (manifest == null || !manifest.isValid()) {
+			try {
+				manifest = type.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Returns false if the content read from the file is incomplete.
+	 */
+	abstract boolean isValid();
+
+	/**
+	 * Writes the manifest, replacing the previous file in one step so that an
+	 * interrupted build never leaves a truncated manifest behind.
+	 */
+	synchronized void save(File file) throws IOException {
+		File dir = file.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Failed to create directory " + dir);
+		}
+		File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+		try {
+			try (Writer writer = new OutputStreamWriter(Files.newOutputStream(tmp.toPath()), StandardCharsets.UTF_8)) {
+				GSON.toJson(this, writer);
+			}
+			try {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(tmp.toPath());
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import hudson.FilePath;
+
+/**
+ * Outcome of exporting one language of one bundle to an output file.
+ */
+final class LanguageExportResult extends BufferedResult {
+
+	private final String bundleId;
+	private final String language;
+
+	private boolean written;
+	private boolean changed;
+	private DownloadManifest.ExportState state;
+	private FilePath outputFile;
+	private byte[] output;
+	private boolean translationComplete = true;
+
+	LanguageExportResult(String bundleId, String language) {
+		this.bundleId = bundleId;
+		this.language = language;
+	}
+
+	String getBundleId() {
+		return bundleId;
+	}
+
+	String getLanguage() {
+		return language;
+	}
+
+	/**
+	 * Returns true if the bundle language was exported, false if the output
+	 * file was skipped.
+	 */
+	boolean isWritten() {
+		return written;
+	}
+
+	void setWritten(boolean written) {
+		this.written = written;
+	}
+
+	/**
+	 * Returns true if the content of the output file changed. A file
+	 * exported with the same content as before is not rewritten when the
+	 * write-if-changed mode is enabled.
+	 */
+	boolean isChanged() {
+		return changed;
+	}
+
+	void setChanged(boolean changed) {
+		this.changed = changed;
+	}
+
+	/**
+	 * Returns the state to record in the download manifest, or null if the
+	 * file was neither written nor found up to date.
+	 */
+	DownloadManifest.ExportState getState() {
+		return state;
+	}
+
+	void setState(DownloadManifest.ExportState state) {
+		this.state = state;
+	}
+
+	/**
+	 * Returns the output file to add to the batch, or null if there is no
+	 * batch or nothing to write.
+	 */
+	FilePath getOutputFile() {
+		return outputFile;
+	}
+
+	/**
+	 * Returns the content to write to the output file with the batch.
+	 */
+	byte[] getOutput() {
+		return output;
+	}
+
+	/**
+	 * Returns false if the export holds untranslated or fallback values.
+	 */
+	boolean isTranslationComplete() {
+		return translationComplete;
+	}
+
+	void setTranslationComplete(boolean translationComplete) {
+		this.translationComplete = translationComplete;
+	}
+
+	void setOutput(FilePath outputFile, byte[] output) {
+		this.outputFile = outputFile;
+		this.output = output;
+	}
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.remoting.RemoteInputStream;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Output files of a download, transferred to a remote workspace in one
+ * compressed archive instead of one remote call per file operation.
+ *
+ * <p>
+ * The existing output files are looked up with a single call before the
+ * export, so that the overwrite and write-if-changed decisions are taken
+ * without further calls. The rendered files are then appended to a compressed
+ * archive spooled to a temporary file, so that their content is not kept in
+ * memory, and the archive is streamed to the agent, which unpacks it as it
+ * arrives. When a file is added more than once, the last content wins. The
+ * agent applies the
+ * overwrite and write-if-changed rules again, in case files changed in the
+ * meantime. All files are written to temporary files first and only renamed
+ * once the whole archive has been unpacked, so a failed transfer leaves the
+ * previous output files in place.
+ *
+ * <p>
+ * Files are identified by their remote path, and must be located under the
+ * output directory.
+ */
+final class OutputBatch implements Closeable {
+
+	/**
+	 * What the agent did with a file of the archive.
+	 */
+	enum Outcome {
+		WRITTEN,
+		/** The file already had the same content */
+		UNCHANGED,
+		/** The file exists and overwriting is disabled */
+		SKIPPED
+	}
+
+	private final FilePath root;
+	/** Remote path to MD5 digest of the existing files; null digests were not computed */
+	private final Map<String, String> existing;
+	/** Remote path to size of the files added */
+	private final Map<String, Integer> files = new LinkedHashMap<String, Integer>();
+	private long size;
+	private File spool;
+	private DataOutputStream archive;
+
+	private OutputBatch(FilePath root, Map<String, String> existing) {
+		this.root = root;
+		this.existing = existing;
+	}
+
+	/**
+	 * Looks up which of the candidate output files exist, with one call to the
+	 * agent.
+	 *
+	 * @param root output directory
+	 * @param candidates files which may be written by the download
+	 * @param digests whether to compute the digests of the existing files
+	 */
+	static OutputBatch open(FilePath root, Collection<FilePath> candidates, boolean digests)
+			throws IOException, InterruptedException {
+		ArrayList<String> paths = new ArrayList<String>(candidates.size());
+		for (FilePath candidate : candidates) {
+			paths.add(candidate.getRemote());
+		}
+		return new OutputBatch(root, root.act(new Lookup(paths, digests)));
+	}
+
+	boolean exists(FilePath file) {
+		return existing.containsKey(file.getRemote());
+	}
+
+	/**
+	 * Returns the digest of the file before the download, or null if it did
+	 * not exist or the digest was not computed.
+	 */
+	String getDigest(FilePath file) {
+		return existing.get(file.getRemote());
+	}
+
+	/**
+	 * Appends a file to the archive, replacing a previous content of the same file.
+	 */
+	void add(FilePath file, byte[] content) throws IOException {
+		if (archive == null) {
+			spool = File.createTempFile("gp-output", ".tmp");
+			archive = new DataOutputStream(new BufferedOutputStream(
+					new GZIPOutputStream(Files.newOutputStream(spool.toPath()))));
+		}
+		archive.writeBoolean(true);
+		archive.writeUTF(file.getRemote());
+		archive.writeInt(content.length);
+		archive.write(content);
+		Integer previous = files.put(file.getRemote(), content.length);
+		size += content.length - (previous == null ? 0 : previous);
+	}
+
+	int getFileCount() {
+		return files.size();
+	}
+
+	/**
+	 * Returns the uncompressed size of the files added so far.
+	 */
+	long getSize() {
+		return size;
+	}
+
+	/**
+	 * Streams the archive to the agent and writes the files.
+	 *
+	 * @return the outcome of each file, by remote path
+	 */
+	Map<String, Outcome> commit(boolean overwrite, boolean writeIfChanged) throws IOException, InterruptedException {
+		if (files.isEmpty()) {
+			return new HashMap<String, Outcome>();
+		}
+		archive.writeBoolean(false);
+		archive.close();
+		archive = null;
+		try (InputStream in = Files.newInputStream(spool.toPath())) {
+			return root.act(new Unpack(new RemoteInputStream(in, RemoteInputStream.Flag.GREEDY), overwrite,
+					writeIfChanged));
+		}
+	}
+
+	/**
+	 * Deletes the spooled archive, whether it was committed or not.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (archive != null) {
+				archive.close();
+				archive = null;
+			}
+		} finally {
+			if (spool != null) {
+				Files.deleteIfExists(spool.toPath());
+				spool = null;
+			}
+		}
+	}
+
+	private static String digest(File file) throws IOException {
+		try (InputStream in = Files.newInputStream(file.toPath())) {
+			return Util.getDigestOf(in);
+		}
+	}
+
+	/**
+	 * Returns the file if it is located under the root directory.
+	 */
+	private static File resolve(File root, String path) throws IOException {
+		File file = new File(path);
+		Path rootPath = root.getAbsoluteFile().toPath().normalize();
+		if (!file.getAbsoluteFile().toPath().normalize().startsWith(rootPath)) {
+			throw new IOException("The output file " + path + " is not located under " + root);
+		}
+		return file;
+	}
+
+	private static final class Lookup extends MasterToSlaveFileCallable<Map<String, String>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ArrayList<String> paths;
+		private final boolean digests;
+
+		Lookup(ArrayList<String> paths, boolean digests) {
+			this.paths = paths;
+			this.digests = digests;
+		}
+
+		@Override
+		public Map<String, String> invoke(File root, VirtualChannel channel) throws IOException, InterruptedException {
+			HashMap<String, String> existing = new HashMap<String, String>();
+			for (String path : paths) {
+				File file = new File(path);
+				if (file.isFile()) {
+					existing.put(path, digests ? digest(file) : null);
+				}
+			}
+			return existing;
+		}
+	}
+
+	private static final class Unpack extends MasterToSlaveFileCallable<Map<String, Outcome>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final RemoteInputStream archive;
+		private final boolean overwrite;
+		private final boolean writeIfChanged;
+
+		Unpack(RemoteInputStream archive, boolean overwrite, boolean writeIfChanged) {
+			this.archive = archive;
+			this.overwrite = overwrite;
+			this.writeIfChanged = writeIfChanged;
+		}
+
+		@Override
+		public Map<String, Outcome> invoke(File root, VirtualChannel channel) throws IOException, InterruptedException {
+			HashMap<String, Outcome> outcomes = new HashMap<String, Outcome>();
+			Map<File, File> staged = new LinkedHashMap<File, File>();
+			try {
+				// Stage all files first, so that nothing is replaced if the archive is broken
+				try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+						new GZIPInputStream(archive)))) {
+					byte[] buf = new byte[8192];
+					while (in.readBoolean()) {
+						String path = in.readUTF();
+						int remaining = in.readInt();
+						File file = resolve(root, path);
+						File previous = staged.remove(file);
+						if (previous != null) {
+							Files.delete(previous.toPath());
+						}
+						if (file.exists() && !overwrite) {
+							outcomes.put(path, Outcome.SKIPPED);
+							skip(in, remaining);
+							continue;
+						}
+						File dir = file.getParentFile();
+						if (!dir.isDirectory() && !dir.mkdirs()) {
+							throw new IOException("Failed to create directory " + dir);
+						}
+						File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+						staged.put(file, tmp);
+						try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+							while (remaining > 0) {
+								int n = in.read(buf, 0, Math.min(buf.length, remaining));
+								if (n == -1) {
+									throw new IOException("The output archive is truncated at " + path);
+								}
+								out.write(buf, 0, n);
+								remaining -= n;
+							}
+						}
+						if (writeIfChanged && file.isFile() && digest(file).equals(digest(tmp))) {
+							outcomes.put(path, Outcome.UNCHANGED);
+							staged.remove(file);
+							Files.delete(tmp.toPath());
+							continue;
+						}
+						outcomes.put(path, Outcome.WRITTEN);
+					}
+				}
+				for (Map.Entry<File, File> file : staged.entrySet()) {
+					try {
+						Files.move(file.getValue().toPath(), file.getKey().toPath(), StandardCopyOption.REPLACE_EXISTING,
+								StandardCopyOption.ATOMIC_MOVE);
+					} catch (AtomicMoveNotSupportedException e) {
+						Files.move(file.getValue().toPath(), file.getKey().toPath(), StandardCopyOption.REPLACE_EXISTING);
+					}
+				}
+			} finally {
+				// Moved files are gone; this only removes what is left after a failure
+				for (File tmp : staged.values()) {
+					Files.deleteIfExists(tmp.toPath());
+				}
+			}
+			return outcomes;
+		}
+
+		private static void skip(DataInputStream in, int length) throws IOException {
+			while (length > 0) {
+				int n = in.skipBytes(length);
+				if (n <= 0) {
+					throw new IOException("The output archive is truncated");
+				}
+				length -= n;
+			}
+		}
+	}
+}
@@ -0,0 +1,515 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+import com.ibm.g11n.pipeline.client.BundleData;
+import com.ibm.g11n.pipeline.client.NewBundleData;
+import com.ibm.g11n.pipeline.client.NewResourceEntryData;
+import com.ibm.g11n.pipeline.client.ResourceEntryData;
+import com.ibm.g11n.pipeline.client.ResourceEntryDataChangeSet;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
+
+/**
+ * Wraps the {@link ServiceClient} calls made by a build step with bounded
+ * retries, a circuit breaker and an adaptive concurrency limit.
+ *
+ * <ul>
+ * <li>A call failing with a transient error (network failure, timeout, HTTP
+ * 429 or 5xx) is retried up to the configured number of times, after a
+ * randomized exponential backoff.</li>
+ * <li>After {@link #BREAKER_THRESHOLD} consecutive transient failures, the
+ * circuit opens for {@link #BREAKER_OPEN_MILLIS}. After that, a single trial
+ * call decides whether the circuit closes again. A call finding the circuit
+ * open, or its trial in flight, waits until either changes and then tries
+ * again; the wait counts as one of its retries. Only a call with no retry
+ * left fails immediately.</li>
+ * <li>The number of calls in flight is limited. The limit is halved when the
+ * service throttles or fails, and grows by one per window of calls completing
+ * with healthy latency, up to the given maximum, which is the number of
+ * concurrent bundle tasks, whether they run on platform or virtual threads.</li>
+ * </ul>
+ *
+ * <p>
+ * Each attempt is recorded as a service operation in the {@link StepMetrics}
+ * of the step, and each call, retries included, as a phase of the step.
+ *
+ * <p>
+ * Creating a bundle is not retried, since the first attempt may have
+ * succeeded on the service side. All other calls are idempotent.
+ *
+ * <p>
+ * A call rejected with HTTP 401 or 403 invalidates the registration of the
+ * client, so that the next build verifies the credentials again instead of
+ * relying on an earlier verification.
+ */
+final class ResilientServiceClient {
+
+	/** Number of retries used when the build step does not specify one */
+	static final int DEFAULT_MAX_RETRIES = 3;
+
+	static final int BREAKER_THRESHOLD = 5;
+	static final long BREAKER_OPEN_MILLIS = 30000;
+
+	private static final long BACKOFF_BASE_MILLIS = 500;
+	private static final long BACKOFF_MAX_MILLIS = 30000;
+
+	/** Latency above the fastest call observed which still counts as healthy */
+	private static final long HEALTHY_LATENCY_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	/** Minimum time between two decreases of the concurrency limit */
+	private static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private static final Pattern REJECTED = Pattern.compile("\\b40[13]\\b|unauthorized|forbidden|not authorized");
+	private static final Pattern THROTTLED = Pattern.compile("\\b429\\b|too many requests|rate limit");
+	private static final Pattern TRANSIENT = Pattern.compile(
+			"\\b50[0234]\\b|service unavailable|bad gateway|gateway time-?out|internal server error|timed out|timeout|connection reset");
+
+	/**
+	 * A single call to the service.
+	 */
+	interface Call<T> {
+		T call() throws ServiceException;
+	}
+
+	private final ServiceClient client;
+	private final ServiceClientRegistry.Registration registration;
+	private final BundleIdIndex bundleIndex;
+	private final int maxRetries;
+	private final int maxConcurrency;
+	private final PrintStream logger;
+	private final StepMetrics metrics;
+
+	// Circuit breaker state, guarded by breakerLock
+	private final ReentrantLock breakerLock = new ReentrantLock();
+	private final Condition circuitChanged = breakerLock.newCondition();
+	private int consecutiveFailures;
+	private long openUntil;
+	private boolean trialInFlight;
+
+	// Concurrency limit state, guarded by limitLock. Callers wait on a lock
+	// rather than a monitor, so that waiting virtual threads release their carrier.
+	private final ReentrantLock limitLock = new ReentrantLock();
+	private final Condition slotReleased = limitLock.newCondition();
+	private double limit;
+	private int inFlight;
+	private long minLatencyNanos = Long.MAX_VALUE;
+	private long lastDecreaseNanos;
+
+	private final AtomicInteger calls = new AtomicInteger();
+	private final AtomicInteger retries = new AtomicInteger();
+	private final AtomicInteger throttled = new AtomicInteger();
+
+	/**
+	 * @param registration registration of the client, whose bundle index is kept up
+	 *            to date with the bundles created, or null
+	 * @param maxRetries number of retries after the first attempt
+	 * @param initialConcurrency number of calls in flight allowed at first, usually the worker pool size
+	 * @param maxConcurrency upper bound of calls in flight
+	 * @param logger where retries and circuit breaker changes are reported
+	 * @param metrics where the calls are recorded
+	 */
+	ResilientServiceClient(ServiceClient client, ServiceClientRegistry.Registration registration, int maxRetries,
+			int initialConcurrency, int maxConcurrency, PrintStream logger, StepMetrics metrics) {
+		this.client = client;
+		this.registration = registration;
+		this.bundleIndex = registration == null ? null : registration.getBundleIndex();
+		this.maxRetries = Math.max(0, maxRetries);
+		this.maxConcurrency = Math.max(1, maxConcurrency);
+		this.limit = Math.max(1, Math.min(initialConcurrency, this.maxConcurrency));
+		this.lastDecreaseNanos = System.nanoTime() - DECREASE_INTERVAL_NANOS;
+		this.logger = logger;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Returns the metrics of the step making the calls.
+	 */
+	StepMetrics getMetrics() {
+		return metrics;
+	}
+
+	Set<String> getBundleIds() throws ServiceException, InterruptedException {
+		return execute("getBundleIds", "", true, () -> client.getBundleIds());
+	}
+
+	BundleData getBundleInfo(final String bundleId) throws ServiceException, InterruptedException {
+		long start = System.nanoTime();
+		try {
+			return execute("getBundleInfo", bundleId, true, () -> client.getBundleInfo(bundleId));
+		} catch (ServiceException e) {
+			// The bundle may have been deleted since the index was loaded
+			invalidateIndex();
+			throw e;
+		} finally {
+			metrics.record(StepMetrics.Phase.BUNDLE_INFO, System.nanoTime() - start, 0, 1);
+		}
+	}
+
+	void createBundle(final String bundleId, final NewBundleData newBundleData)
+			throws ServiceException, InterruptedException {
+		long start = System.nanoTime();
+		try {
+			execute("createBundle", bundleId, false, () -> {
+				client.createBundle(bundleId, newBundleData);
+				return null;
+			});
+		} catch (ServiceException e) {
+			// The bundle may have been created by someone else since the index was loaded
+			invalidateIndex();
+			throw e;
+		} finally {
+			metrics.record(StepMetrics.Phase.CREATE, System.nanoTime() - start, 0, 1);
+		}
+		if (bundleIndex != null) {
+			bundleIndex.added(bundleId);
+		}
+	}
+
+	Map<String, ResourceEntryData> getResourceEntries(final String bundleId, final String language)
+			throws ServiceException, InterruptedException {
+		long start = System.nanoTime();
+		Map<String, ResourceEntryData> entries = execute("getResourceEntries", bundleId + ", " + language, true,
+				() -> client.getResourceEntries(bundleId, language));
+		long bytes = 0;
+		if (entries != null) {
+			for (Map.Entry<String, ResourceEntryData> entry : entries.entrySet()) {
+				bytes += ResourceEntryBatcher.utf8Length(entry.getKey())
+						+ ResourceEntryBatcher.utf8Length(entry.getValue().getValue())
+						+ ResourceEntryBatcher.utf8Length(entry.getValue().getSourceValue());
+			}
+		}
+		metrics.record(StepMetrics.Phase.ENTRY_FETCH, bundleId, language, System.nanoTime() - start, bytes,
+				entries == null ? 0 : entries.size());
+		return entries;
+	}
+
+	/**
+	 * Returns the keys of the resource entries of a language. The service
+	 * only returns whole entries, which are dropped as soon as their keys are
+	 * taken, so that callers needing the keys only do not hold the values.
+	 */
+	Set<String> getResourceKeys(String bundleId, String language) throws ServiceException, InterruptedException {
+		Map<String, ResourceEntryData> entries = getResourceEntries(bundleId, language);
+		return entries == null ? new HashSet<String>() : new HashSet<String>(entries.keySet());
+	}
+
+	void uploadResourceEntries(final String bundleId, final String language,
+			final Map<String, NewResourceEntryData> entries) throws ServiceException, InterruptedException {
+		execute("uploadResourceEntries", bundleId + ", " + language, true, () -> {
+			client.uploadResourceEntries(bundleId, language, entries);
+			return null;
+		});
+	}
+
+	void updateResourceEntries(final String bundleId, final String language,
+			final Map<String, ResourceEntryDataChangeSet> changes, final boolean resync)
+					throws ServiceException, InterruptedException {
+		execute("updateResourceEntries", bundleId + ", " + language, true, () -> {
+			client.updateResourceEntries(bundleId, language, changes, resync);
+			return null;
+		});
+	}
+
+	private void invalidateIndex() {
+		if (bundleIndex != null) {
+			bundleIndex.invalidate();
+		}
+	}
+
+	/**
+	 * Returns a one line summary of the calls made so far.
+	 */
+	String getStatistics() {
+		limitLock.lock();
+		try {
+			return "Globalization Pipeline service calls : " + calls.get() + ", retries : " + retries.get()
+					+ ", throttled : " + throttled.get() + ", concurrency limit : " + (int) limit + "/" + maxConcurrency;
+		} finally {
+			limitLock.unlock();
+		}
+	}
+
+	/**
+	 * @param name name of the operation, under which the attempts are recorded
+	 * @param arguments arguments of the operation, shown in the console
+	 */
+	private <T> T execute(String name, String arguments, boolean retryable, Call<T> call)
+			throws ServiceException, InterruptedException {
+		String operation = name + "(" + arguments + ")";
+		for (int attempt = 0;; attempt++) {
+			Boolean trial;
+			while ((trial = enterCircuit()) == null) {
+				if (!retryable || attempt >= maxRetries) {
+					throw new ServiceException("Globalization Pipeline call " + operation
+							+ " rejected: the service failed " + BREAKER_THRESHOLD
+							+ " or more times in a row, calls are suspended until it recovers");
+				}
+				retries.incrementAndGet();
+				attempt++;
+				logger.println("Globalization Pipeline call " + operation
+						+ " waiting for the service to recover (" + attempt + "/" + maxRetries + ")");
+				awaitCircuit();
+			}
+			try {
+				acquire();
+			} catch (InterruptedException e) {
+				if (trial) {
+					endTrial();
+				}
+				throw e;
+			}
+			long start = System.nanoTime();
+			boolean released = false;
+			long delay;
+			try {
+				calls.incrementAndGet();
+				T result = call.call();
+				metrics.recordOperation(name, System.nanoTime() - start, false);
+				release(System.nanoTime() - start, false, false);
+				released = true;
+				closeCircuit();
+				return result;
+			} catch (ServiceException e) {
+				metrics.recordOperation(name, System.nanoTime() - start, true);
+				boolean isThrottled = isThrottled(e);
+				boolean isTransient = isThrottled || isTransient(e);
+				if (isThrottled) {
+					throttled.incrementAndGet();
+				}
+				release(System.nanoTime() - start, isTransient, true);
+				released = true;
+				if (!isTransient) {
+					if (isRejected(e)) {
+						credentialsRejected(operation);
+					}
+					// The service responded; a client side error says nothing about its health
+					closeCircuit();
+					throw e;
+				}
+				recordFailure(operation);
+				if (!retryable || attempt >= maxRetries) {
+					throw e;
+				}
+				delay = backoffMillis(attempt);
+				retries.incrementAndGet();
+				logger.println("Globalization Pipeline call " + operation + " failed : " + e.getMessage()
+						+ " - retrying in " + delay + " ms (" + (attempt + 1) + "/" + maxRetries + ")");
+			} finally {
+				if (!released) {
+					release(System.nanoTime() - start, false, false);
+				}
+				if (trial) {
+					endTrial();
+				}
+			}
+			Thread.sleep(delay);
+		}
+	}
+
+	/**
+	 * A random delay between half and all of the exponential backoff for this
+	 * attempt, so that concurrent workers do not retry in lockstep.
+	 */
+	private static long backoffMillis(int attempt) {
+		long ceiling = Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << Math.min(attempt, 16));
+		return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+	}
+
+	static boolean isRejected(ServiceException e) {
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			String message = t.getMessage();
+			if (message != null && REJECTED.matcher(message.toLowerCase(Locale.ROOT)).find()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Invalidates the registration after the service rejected the credentials.
+	 */
+	private void credentialsRejected(String operation) {
+		if (registration == null) {
+			return;
+		}
+		if (registration.getValidatedAt() != 0) {
+			logger.println("Globalization Pipeline call " + operation
+					+ " was rejected, the credentials will be verified again by the next build");
+		}
+		registration.invalidate();
+	}
+
+	static boolean isThrottled(ServiceException e) {
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			String message = t.getMessage();
+			if (message != null && THROTTLED.matcher(message.toLowerCase(Locale.ROOT)).find()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static boolean isTransient(ServiceException e) {
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			if (t instanceof IOException) {
+				return true;
+			}
+			String message = t.getMessage();
+			if (message != null && TRANSIENT.matcher(message.toLowerCase(Locale.ROOT)).find()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// ---- circuit breaker
+
+	/**
+	 * Returns false if the circuit is closed, true if the caller makes the
+	 * trial call of a half open circuit, and null while the circuit is open
+	 * or its trial call is in flight.
+	 */
+	private Boolean enterCircuit() {
+		breakerLock.lock();
+		try {
+			if (consecutiveFailures < BREAKER_THRESHOLD) {
+				return false;
+			}
+			if (System.currentTimeMillis() < openUntil || trialInFlight) {
+				return null;
+			}
+			trialInFlight = true;
+			return true;
+		} finally {
+			breakerLock.unlock();
+		}
+	}
+
+	/**
+	 * Waits until the circuit closes, or until it is open no longer and no
+	 * trial call is in flight.
+	 */
+	private void awaitCircuit() throws InterruptedException {
+		breakerLock.lockInterruptibly();
+		try {
+			while (consecutiveFailures >= BREAKER_THRESHOLD) {
+				long remaining = openUntil - System.currentTimeMillis();
+				if (remaining > 0) {
+					circuitChanged.await(remaining, TimeUnit.MILLISECONDS);
+				} else if (trialInFlight) {
+					circuitChanged.await();
+				} else {
+					return;
+				}
+			}
+		} finally {
+			breakerLock.unlock();
+		}
+	}
+
+	private void endTrial() {
+		breakerLock.lock();
+		try {
+			trialInFlight = false;
+			circuitChanged.signalAll();
+		} finally {
+			breakerLock.unlock();
+		}
+	}
+
+	private void closeCircuit() {
+		breakerLock.lock();
+		try {
+			if (consecutiveFailures >= BREAKER_THRESHOLD) {
+				logger.println("Globalization Pipeline service recovered, resuming calls");
+				circuitChanged.signalAll();
+			}
+			consecutiveFailures = 0;
+		} finally {
+			breakerLock.unlock();
+		}
+	}
+
+	private void recordFailure(String operation) {
+		breakerLock.lock();
+		try {
+			consecutiveFailures++;
+			if (consecutiveFailures >= BREAKER_THRESHOLD) {
+				openUntil = System.currentTimeMillis() + BREAKER_OPEN_MILLIS;
+				if (consecutiveFailures == BREAKER_THRESHOLD) {
+					logger.println("Globalization Pipeline service failed " + consecutiveFailures
+							+ " times in a row, suspending calls for " + BREAKER_OPEN_MILLIS / 1000 + " seconds");
+				}
+			}
+		} finally {
+			breakerLock.unlock();
+		}
+	}
+
+	// ---- concurrency limit
+
+	private void acquire() throws InterruptedException {
+		limitLock.lockInterruptibly();
+		try {
+			while (inFlight >= (int) limit) {
+				slotReleased.await();
+			}
+			inFlight++;
+		} finally {
+			limitLock.unlock();
+		}
+	}
+
+	/**
+	 * Releases the slot of a finished call and adjusts the limit: additive
+	 * increase on healthy latency, multiplicative decrease on congestion.
+	 */
+	private void release(long latencyNanos, boolean congested, boolean failed) {
+		limitLock.lock();
+		try {
+			inFlight--;
+			long now = System.nanoTime();
+			if (congested) {
+				if (now - lastDecreaseNanos >= DECREASE_INTERVAL_NANOS) {
+					limit = Math.max(1, limit / 2);
+					lastDecreaseNanos = now;
+				}
+			} else if (!failed) {
+				minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+				if (latencyNanos <= minLatencyNanos * 2 + HEALTHY_LATENCY_SLACK_NANOS) {
+					limit = Math.min(maxConcurrency, limit + 1 / limit);
+				}
+			}
+			slotReleased.signalAll();
+		} finally {
+			limitLock.unlock();
+		}
+	}
+}
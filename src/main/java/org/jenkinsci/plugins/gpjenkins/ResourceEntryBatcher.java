@@ -0,0 +1,242 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ibm.g11n.pipeline.client.NewResourceEntryData;
+import com.ibm.g11n.pipeline.client.ResourceEntryDataChangeSet;
+import com.ibm.g11n.pipeline.client.ServiceException;
+import com.ibm.g11n.pipeline.resfilter.ResourceString;
+
+/**
+ * Sends resource entries of one bundle and language in batches, each limited
+ * by the number of entries and by the approximate size of the request body.
+ * A batch is sent as soon as it is full, so only one batch of request data is
+ * held in memory at a time.
+ *
+ * <p>
+ * In replace mode, the first batch is sent with the upload API, which replaces
+ * all resource entries of the language, and the following batches are merged
+ * into it with the partial update API. Keys of the language which are not in
+ * the first batch are deleted by the upload, along with their translations,
+ * so replace mode must only be used for a bundle which has just been created
+ * or when all entries fit in one request (see {@link #fitsInOneRequest}).
+ * Otherwise, every batch is sent with the partial update API, and removed keys
+ * are deleted explicitly.
+ */
+final class ResourceEntryBatcher {
+
+	/** Approximate JSON overhead of one entry: quotes, field names and separators */
+	private static final int ENTRY_OVERHEAD = 64;
+
+	private final ResilientServiceClient gpClient;
+	private final String bundleId;
+	private final String language;
+	private final int maxEntries;
+	private final long maxBytes;
+
+	private boolean replace;
+
+	private Map<String, NewResourceEntryData> newEntries = new HashMap<>();
+	private Map<String, ResourceEntryDataChangeSet> changes = new HashMap<>();
+	private long batchBytes;
+	private int batchDeleted;
+
+	private int entriesSent;
+	private int entriesDeleted;
+	private int requests;
+
+	/**
+	 * @param replace whether the entries replace the current content of the language
+	 * @param maxEntries maximum number of entries per request, 0 for no limit
+	 * @param maxBytes approximate maximum size of a request in bytes, 0 for no limit
+	 */
+	ResourceEntryBatcher(ResilientServiceClient gpClient, String bundleId, String language, boolean replace,
+			int maxEntries, long maxBytes) {
+		this.gpClient = gpClient;
+		this.bundleId = bundleId;
+		this.language = language;
+		this.replace = replace;
+		this.maxEntries = maxEntries > 0 ? maxEntries : Integer.MAX_VALUE;
+		this.maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Returns true if the resource strings are sent in a single request with
+	 * the given limits.
+	 */
+	static boolean fitsInOneRequest(Collection<ResourceString> resStrings, int maxEntries, long maxBytes) {
+		if (maxEntries > 0 && resStrings.size() > maxEntries) {
+			return false;
+		}
+		if (maxBytes <= 0) {
+			return true;
+		}
+		long bytes = 0;
+		for (ResourceString resString : resStrings) {
+			bytes += sizeOf(resString);
+			if (bytes > maxBytes) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a resource string, sending the current batch first if the string
+	 * does not fit in it.
+	 */
+	void add(ResourceString resString) throws ServiceException, InterruptedException {
+		long size = sizeOf(resString);
+		reserve(size);
+		Integer seqNum = resString.getSequenceNumber() >= 0 ? Integer.valueOf(resString.getSequenceNumber()) : null;
+		if (replace) {
+			NewResourceEntryData entry = new NewResourceEntryData(resString.getValue());
+			if (seqNum != null) {
+				entry.setSequenceNumber(seqNum);
+			}
+			// set resource string notes
+			entry.setNotes(resString.getNotes());
+			entry.setMetadata(resString.getMetadata());
+			newEntries.put(resString.getKey(), entry);
+		} else {
+			ResourceEntryDataChangeSet change = new ResourceEntryDataChangeSet();
+			change.setValue(resString.getValue());
+			if (seqNum != null) {
+				change.setSequenceNumber(seqNum);
+			}
+			// empty notes and metadata clear the current ones
+			change.setNotes(resString.getNotes() == null ? Collections.<String>emptyList() : resString.getNotes());
+			change.setMetadata(resString.getMetadata() == null
+					? Collections.<String, String>emptyMap() : resString.getMetadata());
+			changes.put(resString.getKey(), change);
+		}
+		batchBytes += size;
+	}
+
+	/**
+	 * Adds the deletion of a key. Deletions are sent with the partial update API.
+	 */
+	void delete(String key) throws ServiceException, InterruptedException {
+		if (replace) {
+			throw new IllegalStateException("Keys are deleted by the upload itself in replace mode");
+		}
+		long size = utf8Length(key) + ENTRY_OVERHEAD;
+		reserve(size);
+		changes.put(key, null);
+		batchBytes += size;
+		batchDeleted++;
+	}
+
+	/**
+	 * Sends the current batch. More entries may be added afterwards, in new
+	 * batches.
+	 */
+	void finish() throws ServiceException, InterruptedException {
+		flush();
+	}
+
+	/**
+	 * Returns the number of entries added or modified, not including deletions.
+	 */
+	int getEntriesSent() {
+		return entriesSent;
+	}
+
+	int getEntriesDeleted() {
+		return entriesDeleted;
+	}
+
+	int getRequests() {
+		return requests;
+	}
+
+	private void reserve(long size) throws ServiceException, InterruptedException {
+		int count = newEntries.size() + changes.size();
+		if (count > 0 && (count >= maxEntries || batchBytes + size > maxBytes)) {
+			flush();
+		}
+	}
+
+	private void flush() throws ServiceException, InterruptedException {
+		long start = System.nanoTime();
+		int entries = newEntries.size() + changes.size();
+		if (!newEntries.isEmpty()) {
+			gpClient.uploadResourceEntries(bundleId, language, newEntries);
+			entriesSent += newEntries.size();
+			requests++;
+			// The following batches are merged into the uploaded entries
+			replace = false;
+			newEntries = new HashMap<>();
+		} else if (!changes.isEmpty()) {
+			gpClient.updateResourceEntries(bundleId, language, changes, false);
+			entriesSent += changes.size() - batchDeleted;
+			entriesDeleted += batchDeleted;
+			requests++;
+			changes = new HashMap<>();
+		}
+		if (entries > 0) {
+			gpClient.getMetrics().record(StepMetrics.Phase.UPLOAD, bundleId, language, System.nanoTime() - start,
+					batchBytes, entries);
+		}
+		batchBytes = 0;
+		batchDeleted = 0;
+	}
+
+	private static long sizeOf(ResourceString resString) {
+		long size = utf8Length(resString.getKey()) + utf8Length(resString.getValue()) + ENTRY_OVERHEAD;
+		List<String> notes = resString.getNotes();
+		if (notes != null) {
+			for (String note : notes) {
+				size += utf8Length(note) + 4;
+			}
+		}
+		Map<String, String> metadata = resString.getMetadata();
+		if (metadata != null) {
+			for (Map.Entry<String, String> entry : metadata.entrySet()) {
+				size += utf8Length(entry.getKey()) + utf8Length(entry.getValue()) + 6;
+			}
+		}
+		return size;
+	}
+
+	static int utf8Length(String s) {
+		if (s == null) {
+			return 0;
+		}
+		int length = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c)) {
+				length += 4;
+				i++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.Serializable;
+
+import org.kohsuke.stapler.DataBoundConstructor;
+
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+
+/**
+ * Source files of one base directory and resource type, processed by the
+ * build step in addition to the files of its own base directory.
+ *
+ * <p>
+ * All resource sets of a step are processed in one pass: the credentials are
+ * checked and the bundles listed once, the base directories are scanned with
+ * one call to the agent, and the bundles of all sets share the worker pool.
+ */
+public final class ResourceSet extends AbstractDescribableImpl<ResourceSet> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String baseDir;
+	private final String includeRule;
+	private final String excludeRule;
+	private final String type;
+	private final String bundleLayout;
+
+	@DataBoundConstructor
+	public ResourceSet(String baseDir, String includeRule, String excludeRule, String type, String bundleLayout) {
+		this.baseDir = baseDir;
+		this.includeRule = includeRule;
+		this.excludeRule = excludeRule;
+		this.type = type;
+		this.bundleLayout = bundleLayout;
+	}
+
+	public String getBaseDir() {
+		return baseDir;
+	}
+
+	public String getIncludeRule() {
+		return includeRule;
+	}
+
+	public String getExcludeRule() {
+		return excludeRule == null ? "" : excludeRule;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public String getBundleLayout() {
+		return bundleLayout == null ? "lang_suffix" : bundleLayout;
+	}
+
+	@Extension
+	public static final class DescriptorImpl extends Descriptor<ResourceSet> {
+
+		@Override
+		public String getDisplayName() {
+			return "Resource set";
+		}
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import com.ibm.g11n.pipeline.client.ServiceAccount;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
+
+import hudson.Util;
+
+/**
+ * JVM wide registry of {@link ServiceClient} instances, keyed by service
+ * URL, instance ID, user ID and a hash of the password.
+ *
+ * <p>
+ * Builds using the same credentials share one client, and so its HTTP
+ * connections, instead of creating a new one per build. The registry also
+ * remembers when the credentials were last verified against the service, so
+ * that the credential check is only repeated after {@link #VALIDATION_TTL_MILLIS},
+ * and keeps the {@link BundleIdIndex} of the instance as seen by the user.
+ * A registration is invalidated as soon as a call is rejected with HTTP 401
+ * or 403, see {@link ResilientServiceClient}, so revoked credentials are
+ * noticed by the next build rather than after the TTL.
+ * When the goal runs on an agent, the registry of the agent JVM is used.
+ */
+final class ServiceClientRegistry {
+
+	static final long VALIDATION_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+	/** Maximum number of clients kept; the least recently used one is dropped first */
+	static final int MAX_CLIENTS = 32;
+
+	private static final Map<Key, Registration> REGISTRATIONS = new LinkedHashMap<Key, Registration>(16, 0.75f, true);
+
+	private ServiceClientRegistry() {
+	}
+
+	/**
+	 * A client and the time its credentials were last verified.
+	 */
+	static final class Registration {
+
+		private final Key key;
+		private final ServiceClient client;
+		private final BundleIdIndex bundleIndex = new BundleIdIndex();
+		private volatile long validatedAt;
+
+		Registration(Key key, ServiceClient client) {
+			this.key = key;
+			this.client = client;
+		}
+
+		ServiceClient getClient() {
+			return client;
+		}
+
+		BundleIdIndex getBundleIndex() {
+			return bundleIndex;
+		}
+
+		/**
+		 * Returns true if the credentials were verified within the TTL.
+		 */
+		boolean isValidated() {
+			long at = validatedAt;
+			return at != 0 && System.currentTimeMillis() - at < VALIDATION_TTL_MILLIS;
+		}
+
+		/**
+		 * Returns when the credentials were last verified, or 0.
+		 */
+		long getValidatedAt() {
+			return validatedAt;
+		}
+
+		/**
+		 * Records that a call with this client has just succeeded.
+		 */
+		void validated() {
+			validatedAt = System.currentTimeMillis();
+		}
+
+		/**
+		 * Verifies the credentials by listing the bundles, unless they were
+		 * verified within the TTL. The listing also refreshes the bundle index.
+		 *
+		 * @param force whether to verify even if the credentials were verified recently
+		 * @return false if no call was made
+		 */
+		boolean verify(BundleIdIndex.Loader loader, boolean force) throws ServiceException, InterruptedException {
+			if (!force && isValidated()) {
+				return false;
+			}
+			try {
+				bundleIndex.refresh(loader);
+			} catch (ServiceException e) {
+				invalidate();
+				throw e;
+			}
+			validated();
+			return true;
+		}
+
+		/**
+		 * Forgets the client, for example after the credentials were rejected.
+		 */
+		void invalidate() {
+			validatedAt = 0;
+			bundleIndex.invalidate();
+			synchronized (REGISTRATIONS) {
+				if (REGISTRATIONS.get(key) == this) {
+					REGISTRATIONS.remove(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the registration for the credentials, creating the client if
+	 * there is none yet.
+	 */
+	static Registration get(String url, String instanceId, String userId, String password) {
+		Key key = new Key(url, instanceId, userId, password);
+		synchronized (REGISTRATIONS) {
+			Registration registration = REGISTRATIONS.get(key);
+			if (registration == null) {
+				registration = new Registration(key, ServiceClient.getInstance(
+						ServiceAccount.getInstance(url, instanceId, userId, password)));
+				REGISTRATIONS.put(key, registration);
+				if (REGISTRATIONS.size() > MAX_CLIENTS) {
+					Iterator<Key> eldest = REGISTRATIONS.keySet().iterator();
+					eldest.next();
+					eldest.remove();
+				}
+			}
+			return registration;
+		}
+	}
+
+	/**
+	 * Returns the registration for the credentials, or null if there is none.
+	 * Unlike {@link #get}, never creates a client.
+	 */
+	static Registration find(String url, String instanceId, String userId, String password) {
+		Key key = new Key(url, instanceId, userId, password);
+		synchronized (REGISTRATIONS) {
+			return REGISTRATIONS.get(key);
+		}
+	}
+
+	/**
+	 * Identifies a set of credentials without keeping the password itself.
+	 */
+	static final class Key {
+
+		private final String url;
+		private final String instanceId;
+		private final String userId;
+		private final String passwordHash;
+
+		Key(String url, String instanceId, String userId, String password) {
+			this.url = url;
+			this.instanceId = instanceId;
+			this.userId = userId;
+			this.passwordHash = hash(password);
+		}
+
+		private static String hash(String password) {
+			try {
+				MessageDigest md = MessageDigest.getInstance("SHA-256");
+				return Util.toHexString(md.digest(String.valueOf(password).getBytes(StandardCharsets.UTF_8)));
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return Objects.equals(url, other.url) && Objects.equals(instanceId, other.instanceId)
+					&& Objects.equals(userId, other.userId) && passwordHash.equals(other.passwordHash);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(url, instanceId, userId, passwordHash);
+		}
+	}
+}
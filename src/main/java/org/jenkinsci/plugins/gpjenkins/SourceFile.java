@@ -0,0 +1,195 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.util.List;
+
+import com.ibm.g11n.pipeline.resfilter.impl.DefaultResourceFilterProvider;
+
+import hudson.FilePath;
+
+/**
+ * A source file selected by the include and exclude rules, with the names
+ * derived from its path resolved once. The bundle ID and the output files of
+ * the source file are computed from these names, without calls to the agent.
+ * The file also carries the resource type and output layout of the
+ * {@link ResourceSet} it belongs to.
+ */
+final class SourceFile {
+
+	private final FilePath baseDirectory;
+	private final FilePath file;
+	private final String relativePath;
+	private final String directory;
+	private final String name;
+	private final String baseName;
+	private final String extension;
+	private String bundleId;
+	/** Bundle ID including the trailing slash of the configured base directory, or null */
+	private String legacyBundleId;
+	private final String type;
+	private final String bundleLayout;
+
+	/**
+	 * @param baseDirectory base directory of the rules
+	 * @param relativePath path of the file relative to the base directory, using '/' as the separator
+	 * @param type resource type of the file
+	 * @param bundleLayout output layout of the translated files
+	 */
+	SourceFile(FilePath baseDirectory, String relativePath, String type, String bundleLayout) {
+		this.baseDirectory = baseDirectory;
+		this.file = new FilePath(baseDirectory, relativePath);
+		this.relativePath = relativePath;
+		int slashIndex = relativePath.lastIndexOf('/');
+		this.directory = relativePath.substring(0, slashIndex + 1);
+		this.name = relativePath.substring(slashIndex + 1);
+		int extensionIndex = name.lastIndexOf('.');
+		this.baseName = extensionIndex > 0 ? name.substring(0, extensionIndex) : name;
+		this.extension = extensionIndex > 0 ? name.substring(extensionIndex) : "";
+		this.bundleId = toBundleId(directory, type);
+		this.type = type;
+		this.bundleLayout = bundleLayout;
+	}
+
+	/**
+	 * Resolves the files listed by a {@link WorkspaceScanner}.
+	 *
+	 * @param baseDir base directory as configured
+	 */
+	static SourceFile[] resolve(FilePath baseDirectory, String baseDir, List<String> relativePaths, String type,
+			String bundleLayout) {
+		// Bundle IDs used to start with the base directory when it was configured with a trailing slash
+		String legacyPrefix = baseDir.trim().endsWith("/") ? baseDir.trim() : null;
+		SourceFile[] files = new SourceFile[relativePaths.size()];
+		for (int i = 0; i < files.length; i++) {
+			files[i] = new SourceFile(baseDirectory, relativePaths.get(i), type, bundleLayout);
+			if (legacyPrefix != null) {
+				files[i].legacyBundleId = files[i].toBundleId(legacyPrefix + files[i].directory, type);
+			}
+		}
+		return files;
+	}
+
+	private String toBundleId(String directory, String type) {
+		String fileName = name.replace(' ', '_');
+		if (DefaultResourceFilterProvider.isJavaType(type)) {
+			int dotIdx = fileName.indexOf('.');
+			if (dotIdx >= 0) {
+				fileName = fileName.substring(0, dotIdx);
+			}
+			return directory.replace('/', '.') + fileName;
+		}
+		return directory.replace('/', '-') + fileName;
+	}
+
+	/**
+	 * Returns the base directory of the rules which selected the file.
+	 */
+	FilePath getBaseDirectory() {
+		return baseDirectory;
+	}
+
+	FilePath getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the path of the file relative to the base directory.
+	 */
+	String getRelativePath() {
+		return relativePath;
+	}
+
+	/**
+	 * Returns the directory of the file relative to the base directory,
+	 * ending with '/', or an empty string for the base directory itself.
+	 */
+	String getDirectory() {
+		return directory;
+	}
+
+	String getName() {
+		return name;
+	}
+
+	String getBundleId() {
+		return bundleId;
+	}
+
+	/**
+	 * Returns the bundle ID that earlier releases computed when the base
+	 * directory was configured with a trailing slash, or null if it was not.
+	 */
+	String getLegacyBundleId() {
+		return legacyBundleId;
+	}
+
+	/**
+	 * Keeps using the legacy bundle ID, for a bundle created under it.
+	 */
+	void useLegacyBundleId() {
+		bundleId = legacyBundleId;
+	}
+
+	String getType() {
+		return type;
+	}
+
+	String getBundleLayout() {
+		return bundleLayout;
+	}
+
+	/**
+	 * Returns the output file of one language.
+	 *
+	 * @param outDirectory output directory
+	 * @param bundleLayout one of the output layouts
+	 * @param languageId language ID of the output, as used in file names
+	 * @param srcLanguageId language ID of the source language, as used in file names
+	 * @param sourceLanguage whether the output is the source language
+	 */
+	FilePath getOutputFile(FilePath outDirectory, String bundleLayout, String languageId, String srcLanguageId,
+			boolean sourceLanguage) {
+		FilePath dir = new FilePath(outDirectory, directory);
+		switch (bundleLayout) {
+		case "lang_only": {
+			int extensionIndex = name.lastIndexOf('.');
+			return new FilePath(dir.getParent(), languageId + (extensionIndex >= 0 ? name.substring(extensionIndex) : ""));
+		}
+		case "lang_subdir":
+			return new FilePath(new FilePath(dir, languageId), name);
+		case "lang_dir":
+			return new FilePath(new FilePath(dir.getParent(), languageId), name);
+		case "lang_suffix":
+		default: {
+			// Compose file name if the output language is not the source language
+			if (sourceLanguage) {
+				return new FilePath(dir, name);
+			}
+			// checks if the source file's base name ends with source language
+			// code suffix, e.g. foo_en => foo
+			String outBaseName = baseName;
+			String srcLangSuffix = "_" + srcLanguageId;
+			if (outBaseName.endsWith(srcLangSuffix)) {
+				outBaseName = outBaseName.substring(0, outBaseName.length() - srcLangSuffix.length());
+			}
+			// append target language suffix to the base name, e.g. foo => foo_de
+			return new FilePath(dir, outBaseName + "_" + languageId + extension);
+		}
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.locks.ReentrantLock;
+
+import hudson.FilePath;
+import hudson.Util;
+
+/**
+ * Source file of a bundle, shared by the export tasks of all languages of
+ * the bundle. The file is read from the workspace once, by the first task
+ * needing it, and the other tasks merge their translations into the content
+ * held in memory.
+ *
+ * <p>
+ * The content is only referenced by the export tasks of the bundle, so it is
+ * released once the last of them has run.
+ *
+ * <p>
+ * The file is read under a lock rather than a monitor, so that export tasks
+ * running on virtual threads release their carrier while one of them waits
+ * for the remote read.
+ */
+final class SourceTemplate {
+
+	private final SourceFile sourceFile;
+
+	// Guarded by lock
+	private final ReentrantLock lock = new ReentrantLock();
+	private byte[] content;
+	private String digest;
+
+	SourceTemplate(SourceFile sourceFile) {
+		this.sourceFile = sourceFile;
+	}
+
+	SourceFile getSourceFile() {
+		return sourceFile;
+	}
+
+	FilePath getFile() {
+		return sourceFile.getFile();
+	}
+
+	String getBundleId() {
+		return sourceFile.getBundleId();
+	}
+
+	/**
+	 * Opens a stream on the content of the source file, reading the file on
+	 * the first call.
+	 */
+	InputStream open() throws IOException, InterruptedException {
+		return new ByteArrayInputStream(getContent());
+	}
+
+	/**
+	 * Returns the MD5 digest of the source file, in the format of
+	 * {@link FilePath#digest()}.
+	 */
+	String getDigest() throws IOException, InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			if (digest == null) {
+				digest = Util.getDigestOf(new ByteArrayInputStream(getContent()));
+			}
+			return digest;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private byte[] getContent() throws IOException, InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			if (content == null) {
+				ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+				try (InputStream in = getFile().read()) {
+					byte[] buf = new byte[8192];
+					int n;
+					while ((n = in.read(buf)) != -1) {
+						buffer.write(buf, 0, n);
+					}
+				} catch (IOException e) {
+					throw new IOException("I/O error while reading the source file " + sourceFile.getName(), e);
+				}
+				content = buffer.toByteArray();
+			}
+			return content;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,521 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Timings, counts and sizes of the phases of one execution of the build step,
+ * and latencies of the service operations it called.
+ *
+ * <p>
+ * Phases run concurrently on the worker pool, so the total time of a phase is
+ * the sum over all workers and can exceed the duration of the step. Service
+ * phases (bundle info, create, upload and entry fetch) include retries and
+ * backoff, while the service operations record each attempt separately.
+ *
+ * <p>
+ * The cost of each bundle language is recorded as well, and the
+ * {@link #MAX_BUNDLE_COSTS} most expensive ones are kept when the step
+ * finishes.
+ *
+ * <p>
+ * The metrics are collected where the goal runs, sent back to the controller
+ * with the summary of the run, and published by {@link GlobalizationPipelineAction}.
+ */
+@ExportedBean
+public final class StepMetrics implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	static final int MAX_BUNDLE_COSTS = 100;
+
+	/**
+	 * Phases of the upload and download goals.
+	 */
+	public enum Phase {
+		CREDENTIAL_CHECK("Credential check"),
+		WORKSPACE_SCAN("Workspace scan"),
+		FILTER_LOADING("Filter loading"),
+		PARSE("Parse"),
+		BUNDLE_INFO("Bundle info"),
+		CREATE("Create bundle"),
+		UPLOAD("Upload"),
+		ENTRY_FETCH("Entry fetch"),
+		CACHE_READ("Cache read"),
+		MERGE_WRITE("Merge/write");
+
+		private final String displayName;
+
+		Phase(String displayName) {
+			this.displayName = displayName;
+		}
+
+		public String getDisplayName() {
+			return displayName;
+		}
+	}
+
+	private final String goal;
+	private final long startTime;
+	private transient long startNanos;
+	private long durationNanos;
+	private final Map<Phase, Stats> phases = new EnumMap<Phase, Stats>(Phase.class);
+	private final Map<String, Stats> operations = new TreeMap<String, Stats>();
+	// Costs by bundle and language while the step runs, only the top ones are kept
+	private transient Map<String, BundleCost> bundleCosts = new HashMap<String, BundleCost>();
+	private List<BundleCost> slowestBundles = Collections.emptyList();
+	private int bundleCostCount;
+
+	StepMetrics(String goal) {
+		this.goal = goal;
+		this.startTime = System.currentTimeMillis();
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Records one occurrence of a phase.
+	 *
+	 * @param bytes bytes read, sent, received or written, or 0
+	 * @param items files, resource entries or bundles processed, or 0
+	 */
+	synchronized void record(Phase phase, long nanos, long bytes, long items) {
+		Stats stats = phases.get(phase);
+		if (stats == null) {
+			stats = new Stats(phase.name().toLowerCase(Locale.ROOT), phase.getDisplayName());
+			phases.put(phase, stats);
+		}
+		stats.add(nanos, bytes, items, false);
+	}
+
+	/**
+	 * Records one occurrence of a phase for one language of a bundle, which
+	 * is also added to the cost of the bundle language.
+	 */
+	synchronized void record(Phase phase, String bundleId, String language, long nanos, long bytes, long items) {
+		record(phase, nanos, bytes, items);
+		if (bundleCosts == null) {
+			return;
+		}
+		String key = bundleId + '\n' + language;
+		BundleCost cost = bundleCosts.get(key);
+		if (cost == null) {
+			cost = new BundleCost(bundleId, language);
+			bundleCosts.put(key, cost);
+		}
+		cost.add(phase, nanos, bytes, items);
+	}
+
+	/**
+	 * Records one attempt of a service operation.
+	 */
+	synchronized void recordOperation(String operation, long nanos, boolean failed) {
+		Stats stats = operations.get(operation);
+		if (stats == null) {
+			stats = new Stats(operation, operation);
+			operations.put(operation, stats);
+		}
+		stats.add(nanos, 0, 0, failed);
+	}
+
+	/**
+	 * Records the duration of the step and computes the percentiles. Nothing
+	 * is recorded afterwards.
+	 */
+	synchronized void finish() {
+		if (durationNanos != 0) {
+			return;
+		}
+		durationNanos = Math.max(1, System.nanoTime() - startNanos);
+		for (Stats stats : phases.values()) {
+			stats.freeze();
+		}
+		for (Stats stats : operations.values()) {
+			stats.freeze();
+		}
+		List<BundleCost> costs = new ArrayList<BundleCost>(bundleCosts.values());
+		costs.sort((a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+		bundleCostCount = costs.size();
+		slowestBundles = new ArrayList<BundleCost>(costs.subList(0, Math.min(MAX_BUNDLE_COSTS, costs.size())));
+		bundleCosts = null;
+	}
+
+	@Exported
+	public String getGoal() {
+		return goal;
+	}
+
+	/**
+	 * Returns when the step started, in milliseconds since the epoch.
+	 */
+	@Exported
+	public long getStartTime() {
+		return startTime;
+	}
+
+	@Exported
+	public long getDurationMillis() {
+		return durationNanos / 1000000;
+	}
+
+	/**
+	 * Returns the recorded phases, in execution order.
+	 */
+	@Exported(inline = true)
+	public synchronized List<Stats> getPhases() {
+		return new ArrayList<Stats>(phases.values());
+	}
+
+	/**
+	 * Returns the service operations called, by name.
+	 */
+	@Exported(inline = true)
+	public synchronized List<Stats> getOperations() {
+		return new ArrayList<Stats>(operations.values());
+	}
+
+	/**
+	 * Returns the most expensive bundle languages, most expensive first.
+	 */
+	@Exported(inline = true)
+	public List<BundleCost> getSlowestBundles() {
+		return slowestBundles;
+	}
+
+	/**
+	 * Returns the number of bundle languages processed, including the ones
+	 * not kept in {@link #getSlowestBundles()}.
+	 */
+	@Exported
+	public int getBundleCostCount() {
+		return bundleCostCount;
+	}
+
+	/**
+	 * Returns a JSON representation, in the same form as the remote API.
+	 */
+	synchronized JsonObject toJson() {
+		JsonObject json = new JsonObject();
+		json.addProperty("goal", goal);
+		json.addProperty("startTime", startTime);
+		json.addProperty("durationMillis", getDurationMillis());
+		JsonArray phaseArray = new JsonArray();
+		for (Stats stats : phases.values()) {
+			phaseArray.add(stats.toJson());
+		}
+		json.add("phases", phaseArray);
+		JsonArray operationArray = new JsonArray();
+		for (Stats stats : operations.values()) {
+			operationArray.add(stats.toJson());
+		}
+		json.add("operations", operationArray);
+		JsonArray bundleArray = new JsonArray();
+		for (BundleCost cost : slowestBundles) {
+			bundleArray.add(cost.toJson());
+		}
+		json.add("slowestBundles", bundleArray);
+		json.addProperty("bundleCostCount", bundleCostCount);
+		return json;
+	}
+
+	/**
+	 * Count, time and size of a phase or service operation. Percentiles are
+	 * computed from a uniform sample of at most {@link #MAX_SAMPLES} durations
+	 * when the step finishes, and the sample is discarded.
+	 */
+	@ExportedBean(defaultVisibility = 2)
+	public static final class Stats implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		static final int MAX_SAMPLES = 1024;
+
+		private final String name;
+		private final String displayName;
+		private int count;
+		private int failures;
+		private long totalNanos;
+		private long maxNanos;
+		private long bytes;
+		private long items;
+		private long[] samples = new long[16];
+		private double p50Millis;
+		private double p95Millis;
+		private double p99Millis;
+
+		Stats(String name, String displayName) {
+			this.name = name;
+			this.displayName = displayName;
+		}
+
+		void add(long nanos, long bytes, long items, boolean failed) {
+			if (samples == null) {
+				return;
+			}
+			count++;
+			if (failed) {
+				failures++;
+			}
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+			this.bytes += bytes;
+			this.items += items;
+			// Reservoir sampling keeps each duration with the same probability
+			if (count <= MAX_SAMPLES) {
+				if (count > samples.length) {
+					samples = Arrays.copyOf(samples, Math.min(MAX_SAMPLES, samples.length * 2));
+				}
+				samples[count - 1] = nanos;
+			} else {
+				int index = ThreadLocalRandom.current().nextInt(count);
+				if (index < MAX_SAMPLES) {
+					samples[index] = nanos;
+				}
+			}
+		}
+
+		void freeze() {
+			if (samples == null) {
+				return;
+			}
+			long[] sorted = Arrays.copyOf(samples, Math.min(count, MAX_SAMPLES));
+			Arrays.sort(sorted);
+			p50Millis = percentile(sorted, 50);
+			p95Millis = percentile(sorted, 95);
+			p99Millis = percentile(sorted, 99);
+			samples = null;
+		}
+
+		private static double percentile(long[] sorted, int percentile) {
+			if (sorted.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+			return sorted[Math.max(0, index)] / 1e6;
+		}
+
+		/**
+		 * Returns the identifier of the phase, or the name of the service
+		 * operation.
+		 */
+		@Exported
+		public String getName() {
+			return name;
+		}
+
+		public String getDisplayName() {
+			return displayName;
+		}
+
+		@Exported
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the number of failed service calls, including retried ones.
+		 */
+		@Exported
+		public int getFailures() {
+			return failures;
+		}
+
+		@Exported
+		public long getTotalMillis() {
+			return totalNanos / 1000000;
+		}
+
+		@Exported
+		public double getMaxMillis() {
+			return maxNanos / 1e6;
+		}
+
+		@Exported
+		public double getP50Millis() {
+			return p50Millis;
+		}
+
+		@Exported
+		public double getP95Millis() {
+			return p95Millis;
+		}
+
+		@Exported
+		public double getP99Millis() {
+			return p99Millis;
+		}
+
+		@Exported
+		public long getBytes() {
+			return bytes;
+		}
+
+		@Exported
+		public long getItems() {
+			return items;
+		}
+
+		JsonObject toJson() {
+			JsonObject json = new JsonObject();
+			json.addProperty("name", name);
+			json.addProperty("count", count);
+			json.addProperty("failures", failures);
+			json.addProperty("totalMillis", getTotalMillis());
+			json.addProperty("maxMillis", getMaxMillis());
+			json.addProperty("p50Millis", p50Millis);
+			json.addProperty("p95Millis", p95Millis);
+			json.addProperty("p99Millis", p99Millis);
+			json.addProperty("bytes", bytes);
+			json.addProperty("items", items);
+			return json;
+		}
+	}
+
+	/**
+	 * Cost of one language of a bundle: parse and upload of the source
+	 * language, or fetch and merge/write of an exported language.
+	 */
+	@ExportedBean(defaultVisibility = 2)
+	public static final class BundleCost implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String bundleId;
+		private final String language;
+		private long keys;
+		private long payloadBytes;
+		private long parseNanos;
+		private long uploadNanos;
+		private long fetchNanos;
+		private long writeNanos;
+
+		BundleCost(String bundleId, String language) {
+			this.bundleId = bundleId;
+			this.language = language;
+		}
+
+		void add(Phase phase, long nanos, long bytes, long items) {
+			switch (phase) {
+			case PARSE:
+				parseNanos += nanos;
+				keys += items;
+				break;
+			case UPLOAD:
+				uploadNanos += nanos;
+				payloadBytes += bytes;
+				break;
+			case ENTRY_FETCH:
+			case CACHE_READ:
+				fetchNanos += nanos;
+				keys = Math.max(keys, items);
+				payloadBytes += bytes;
+				break;
+			case MERGE_WRITE:
+				writeNanos += nanos;
+				break;
+			default:
+				break;
+			}
+		}
+
+		long getTotalNanos() {
+			return parseNanos + uploadNanos + fetchNanos + writeNanos;
+		}
+
+		@Exported
+		public String getBundleId() {
+			return bundleId;
+		}
+
+		@Exported
+		public String getLanguage() {
+			return language;
+		}
+
+		/**
+		 * Returns the number of keys parsed from the source files, or fetched
+		 * from the service.
+		 */
+		@Exported
+		public long getKeys() {
+			return keys;
+		}
+
+		/**
+		 * Returns the approximate size of the resource entries sent to or
+		 * received from the service.
+		 */
+		@Exported
+		public long getPayloadBytes() {
+			return payloadBytes;
+		}
+
+		@Exported
+		public double getParseMillis() {
+			return parseNanos / 1e6;
+		}
+
+		@Exported
+		public double getUploadMillis() {
+			return uploadNanos / 1e6;
+		}
+
+		@Exported
+		public double getFetchMillis() {
+			return fetchNanos / 1e6;
+		}
+
+		@Exported
+		public double getWriteMillis() {
+			return writeNanos / 1e6;
+		}
+
+		@Exported
+		public double getTotalMillis() {
+			return getTotalNanos() / 1e6;
+		}
+
+		JsonObject toJson() {
+			JsonObject json = new JsonObject();
+			json.addProperty("bundleId", bundleId);
+			json.addProperty("language", language);
+			json.addProperty("keys", keys);
+			json.addProperty("payloadBytes", payloadBytes);
+			json.addProperty("parseMillis", getParseMillis());
+			json.addProperty("uploadMillis", getUploadMillis());
+			json.addProperty("fetchMillis", getFetchMillis());
+			json.addProperty("writeMillis", getWriteMillis());
+			json.addProperty("totalMillis", getTotalMillis());
+			return json;
+		}
+	}
+}
@@ -0,0 +1,489 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.ibm.g11n.pipeline.client.ResourceEntryData;
+import com.ibm.g11n.pipeline.client.TranslationStatus;
+
+import hudson.Util;
+
+/**
+ * Disk cache of the resource entries of bundle languages, shared by all jobs
+ * of the Jenkins controller.
+ *
+ * <p>
+ * Entries are keyed by service URL, instance ID, bundle ID, language and the
+ * last update time of the bundle. The update time is read from the bundle
+ * information, which the download goal fetches anyway, so looking an entry up
+ * costs no extra call; the same call also verifies that the credentials of
+ * the job can read the bundle. A cached language is served until the update
+ * time of the bundle changes, so only languages whose translation is
+ * complete are cached: a language with an entry which is not translated yet,
+ * or being translated, is always fetched again. Cached entries updated after
+ * the bundle are dropped on read, since the bundle update time then does not
+ * track them. Entries of previous revisions are no longer looked up, and are
+ * evicted once the cache exceeds its size, least recently used first.
+ *
+ * <p>
+ * Each entry is a gzip compressed binary file holding only the fields used to
+ * build the translated bundles. The size of the cache defaults to
+ * {@link #DEFAULT_MAX_MEGABYTES} and is set by the system property
+ * {@code org.jenkinsci.plugins.gpjenkins.TranslationCache.maxMegabytes}; 0
+ * disables the cache. The cache is only used by jobs enabling it, and not by
+ * goals running on an agent; the runner passes none to them.
+ */
+final class TranslationCache {
+
+	static final int DEFAULT_MAX_MEGABYTES = 256;
+
+	static final String DIR_NAME = "translation-cache";
+
+	private static final int MAGIC = 0x47504332; // "GPC2"
+	private static final String SUFFIX = ".bin";
+
+	private static TranslationCache instance;
+
+	private final File dir;
+	private final long maxBytes;
+
+	// Entry files by name, least recently used first, guarded by lock. File
+	// contents are read and written outside of the lock.
+	private final ReentrantLock lock = new ReentrantLock();
+	private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<String, Long>(16, 0.75f, true);
+	private long totalBytes;
+	private boolean loaded;
+
+	TranslationCache(File dir, long maxBytes) {
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the cache of the Jenkins controller, or null if the cache is
+	 * disabled. Only called on the controller.
+	 *
+	 * @param rootDir the root directory of Jenkins
+	 */
+	static synchronized TranslationCache get(File rootDir) {
+		if (instance == null) {
+			long maxMegabytes = Long.getLong(TranslationCache.class.getName() + ".maxMegabytes",
+					DEFAULT_MAX_MEGABYTES);
+			if (maxMegabytes <= 0) {
+				return null;
+			}
+			instance = new TranslationCache(new File(new File(rootDir, JobManifest.DIR_NAME), DIR_NAME),
+					maxMegabytes * 1024 * 1024);
+		}
+		return instance;
+	}
+
+	/**
+	 * Resource entry fields used to build the translated bundles.
+	 */
+	static final class Entry {
+
+		private final String key;
+		private final String value;
+		private final String sourceValue;
+		private final boolean reviewed;
+		private final Integer sequenceNumber;
+		private final List<String> notes;
+		private final Map<String, String> metadata;
+		private final TranslationStatus translationStatus;
+		/** Milliseconds since the epoch, or 0 if unknown */
+		private final long updatedAt;
+
+		Entry(String key, String value, String sourceValue, boolean reviewed, Integer sequenceNumber,
+				List<String> notes, Map<String, String> metadata, TranslationStatus translationStatus,
+				long updatedAt) {
+			this.key = key;
+			this.value = value;
+			this.sourceValue = sourceValue;
+			this.reviewed = reviewed;
+			this.sequenceNumber = sequenceNumber;
+			this.notes = notes;
+			this.metadata = metadata;
+			this.translationStatus = translationStatus;
+			this.updatedAt = updatedAt;
+		}
+
+		/**
+		 * Keeps the fields used to build the translated bundles, and those
+		 * telling whether the translation is complete.
+		 */
+		static List<Entry> of(Map<String, ResourceEntryData> resEntries) {
+			List<Entry> entries = new ArrayList<Entry>(resEntries.size());
+			for (Map.Entry<String, ResourceEntryData> resEntry : resEntries.entrySet()) {
+				ResourceEntryData data = resEntry.getValue();
+				entries.add(new Entry(resEntry.getKey(), data.getValue(), data.getSourceValue(), data.isReviewed(),
+						data.getSequenceNumber(), data.getNotes(), data.getMetadata(), data.getTranslationStatus(),
+						data.getUpdatedAt() == null ? 0 : data.getUpdatedAt().getTime()));
+			}
+			return entries;
+		}
+
+		String getKey() {
+			return key;
+		}
+
+		String getValue() {
+			return value;
+		}
+
+		String getSourceValue() {
+			return sourceValue;
+		}
+
+		boolean isReviewed() {
+			return reviewed;
+		}
+
+		Integer getSequenceNumber() {
+			return sequenceNumber;
+		}
+
+		List<String> getNotes() {
+			return notes;
+		}
+
+		Map<String, String> getMetadata() {
+			return metadata;
+		}
+
+		/**
+		 * Returns the translation status, or null if the service did not
+		 * report one.
+		 */
+		TranslationStatus getTranslationStatus() {
+			return translationStatus;
+		}
+
+		long getUpdatedAt() {
+			return updatedAt;
+		}
+
+		/**
+		 * Returns true if the value is final: the entry is in the source
+		 * language, or its translation has completed.
+		 */
+		boolean isComplete() {
+			return translationStatus == TranslationStatus.SOURCE_LANGUAGE
+					|| translationStatus == TranslationStatus.TRANSLATED;
+		}
+	}
+
+	/**
+	 * Returns true if the translation of all entries is complete.
+	 */
+	static boolean isComplete(List<Entry> entries) {
+		for (Entry entry : entries) {
+			if (!entry.isComplete()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the latest update time of the entries, or 0.
+	 */
+	static long newestUpdate(List<Entry> entries) {
+		long newest = 0;
+		for (Entry entry : entries) {
+			newest = Math.max(newest, entry.updatedAt);
+		}
+		return newest;
+	}
+
+	/**
+	 * Returns the cache key of a bundle language at the given revision.
+	 */
+	static String key(String url, String instanceId, String bundleId, String language, long bundleUpdatedAt) {
+		return url + '\n' + instanceId + '\n' + bundleId + '\n' + language + '\n' + bundleUpdatedAt;
+	}
+
+	/**
+	 * Returns the cached entries, or null if they are not cached, the entry
+	 * file is unreadable, or an entry was updated after the bundle.
+	 *
+	 * @param bundleUpdatedAt the bundle update time of the key
+	 */
+	List<Entry> get(String key, long bundleUpdatedAt) {
+		String name = fileName(key);
+		lock.lock();
+		try {
+			load();
+			if (sizes.get(name) == null) {
+				return null;
+			}
+		} finally {
+			lock.unlock();
+		}
+		File file = new File(dir, name);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new GZIPInputStream(Files.newInputStream(file.toPath()))))) {
+			if (in.readInt() != MAGIC || !key.equals(readString(in))) {
+				remove(name);
+				return null;
+			}
+			int count = in.readInt();
+			List<Entry> entries = new ArrayList<Entry>(count);
+			for (int i = 0; i < count; i++) {
+				entries.add(readEntry(in));
+			}
+			if (newestUpdate(entries) > bundleUpdatedAt || !isComplete(entries)) {
+				remove(name);
+				return null;
+			}
+			// The modification time keeps the order of use across restarts
+			file.setLastModified(System.currentTimeMillis());
+			return entries;
+		} catch (IOException | RuntimeException e) {
+			remove(name);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the entries, then evicts the least recently used entries above
+	 * the size of the cache. Languages whose translation is not complete, or
+	 * with entries updated after the bundle, are not stored. Failures to write
+	 * are ignored.
+	 *
+	 * @param bundleUpdatedAt the bundle update time of the key
+	 * @return true if the entries were stored
+	 */
+	boolean put(String key, long bundleUpdatedAt, List<Entry> entries) {
+		if (!isComplete(entries) || newestUpdate(entries) > bundleUpdatedAt) {
+			return false;
+		}
+		String name = fileName(key);
+		long size;
+		try {
+			if (!dir.isDirectory() && !dir.mkdirs()) {
+				return false;
+			}
+			File tmp = File.createTempFile(name, ".tmp", dir);
+			try {
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+						new GZIPOutputStream(Files.newOutputStream(tmp.toPath()))))) {
+					out.writeInt(MAGIC);
+					writeString(out, key);
+					out.writeInt(entries.size());
+					for (Entry entry : entries) {
+						writeEntry(out, entry);
+					}
+				}
+				size = tmp.length();
+				try {
+					Files.move(tmp.toPath(), new File(dir, name).toPath(), StandardCopyOption.REPLACE_EXISTING,
+							StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(tmp.toPath(), new File(dir, name).toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(tmp.toPath());
+			}
+		} catch (IOException e) {
+			return false;
+		}
+
+		List<String> evicted = new ArrayList<String>();
+		lock.lock();
+		try {
+			load();
+			Long previous = sizes.put(name, Long.valueOf(size));
+			totalBytes += size - (previous == null ? 0 : previous.longValue());
+			Iterator<Map.Entry<String, Long>> eldest = sizes.entrySet().iterator();
+			while (totalBytes > maxBytes && eldest.hasNext()) {
+				Map.Entry<String, Long> entry = eldest.next();
+				if (entry.getKey().equals(name)) {
+					continue;
+				}
+				totalBytes -= entry.getValue().longValue();
+				evicted.add(entry.getKey());
+				eldest.remove();
+			}
+		} finally {
+			lock.unlock();
+		}
+		for (String evictedName : evicted) {
+			new File(dir, evictedName).delete();
+		}
+		return true;
+	}
+
+	/**
+	 * Lists the entry files on first use, least recently used first.
+	 */
+	private void load() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		File[] files = dir.listFiles((d, n) -> n.endsWith(SUFFIX));
+		if (files == null) {
+			return;
+		}
+		final Map<File, Long> modified = new LinkedHashMap<File, Long>();
+		for (File file : files) {
+			modified.put(file, Long.valueOf(file.lastModified()));
+		}
+		Arrays.sort(files, Comparator.comparing(modified::get));
+		for (File file : files) {
+			long size = file.length();
+			sizes.put(file.getName(), Long.valueOf(size));
+			totalBytes += size;
+		}
+	}
+
+	private void remove(String name) {
+		lock.lock();
+		try {
+			Long size = sizes.remove(name);
+			if (size != null) {
+				totalBytes -= size.longValue();
+			}
+		} finally {
+			lock.unlock();
+		}
+		new File(dir, name).delete();
+	}
+
+	private static String fileName(String key) {
+		return Util.getDigestOf(key) + SUFFIX;
+	}
+
+	// ---- binary format
+
+	private static final int HAS_VALUE = 1;
+	private static final int HAS_SOURCE_VALUE = 2;
+	private static final int REVIEWED = 4;
+	private static final int HAS_SEQUENCE_NUMBER = 8;
+	private static final int HAS_NOTES = 16;
+	private static final int HAS_METADATA = 32;
+
+	private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+		int flags = (entry.value != null ? HAS_VALUE : 0)
+				| (entry.sourceValue != null ? HAS_SOURCE_VALUE : 0)
+				| (entry.reviewed ? REVIEWED : 0)
+				| (entry.sequenceNumber != null ? HAS_SEQUENCE_NUMBER : 0)
+				| (entry.notes != null ? HAS_NOTES : 0)
+				| (entry.metadata != null ? HAS_METADATA : 0);
+		writeString(out, entry.key);
+		out.writeByte(flags);
+		if (entry.value != null) {
+			writeString(out, entry.value);
+		}
+		if (entry.sourceValue != null) {
+			writeString(out, entry.sourceValue);
+		}
+		if (entry.sequenceNumber != null) {
+			out.writeInt(entry.sequenceNumber.intValue());
+		}
+		if (entry.notes != null) {
+			out.writeInt(entry.notes.size());
+			for (String note : entry.notes) {
+				writeString(out, note);
+			}
+		}
+		if (entry.metadata != null) {
+			out.writeInt(entry.metadata.size());
+			for (Map.Entry<String, String> metadata : entry.metadata.entrySet()) {
+				writeString(out, metadata.getKey());
+				writeString(out, metadata.getValue());
+			}
+		}
+		writeString(out, entry.translationStatus == null ? null : entry.translationStatus.name());
+		out.writeLong(entry.updatedAt);
+	}
+
+	private static Entry readEntry(DataInputStream in) throws IOException {
+		String key = readString(in);
+		int flags = in.readUnsignedByte();
+		String value = (flags & HAS_VALUE) != 0 ? readString(in) : null;
+		String sourceValue = (flags & HAS_SOURCE_VALUE) != 0 ? readString(in) : null;
+		Integer sequenceNumber = (flags & HAS_SEQUENCE_NUMBER) != 0 ? Integer.valueOf(in.readInt()) : null;
+		List<String> notes = null;
+		if ((flags & HAS_NOTES) != 0) {
+			int count = in.readInt();
+			notes = new ArrayList<String>(count);
+			for (int i = 0; i < count; i++) {
+				notes.add(readString(in));
+			}
+			notes = Collections.unmodifiableList(notes);
+		}
+		Map<String, String> metadata = null;
+		if ((flags & HAS_METADATA) != 0) {
+			int count = in.readInt();
+			metadata = new LinkedHashMap<String, String>();
+			for (int i = 0; i < count; i++) {
+				metadata.put(readString(in), readString(in));
+			}
+			metadata = Collections.unmodifiableMap(metadata);
+		}
+		String status = readString(in);
+		long updatedAt = in.readLong();
+		return new Entry(key, value, sourceValue, (flags & REVIEWED) != 0, sequenceNumber, notes, metadata,
+				status == null ? null : TranslationStatus.valueOf(status), updatedAt);
+	}
+
+	// Unlike DataOutputStream.writeUTF, not limited to 64 KB, and null is written as -1
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		if (length < 0) {
+			throw new IOException("Invalid string length " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
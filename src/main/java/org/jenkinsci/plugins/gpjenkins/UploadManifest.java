@@ -0,0 +1,103 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Content hashes of the source files uploaded by the previous builds of a job,
+ * used by the incremental upload to skip bundles which have not changed. A
+ * missing manifest means every bundle is uploaded.
+ */
+final class UploadManifest extends JobManifest {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Source file digests and target languages of one bundle at the time
+	 * it was last uploaded.
+	 */
+	static final class BundleState implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Map<String, String> files = new TreeMap<String, String>();
+		private final List<String> targetLanguages;
+
+		BundleState(Collection<String> targetLanguages) {
+			this.targetLanguages = new ArrayList<String>(new TreeSet<String>(targetLanguages));
+		}
+
+		void putFile(String relativePath, String digest) {
+			files.put(relativePath, digest);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof BundleState)) {
+				return false;
+			}
+			BundleState other = (BundleState) obj;
+			return files.equals(other.files) && targetLanguages.equals(other.targetLanguages);
+		}
+
+		@Override
+		public int hashCode() {
+			return files.hashCode() * 31 + targetLanguages.hashCode();
+		}
+	}
+
+	static final String PREFIX = "upload-manifest";
+
+	private Map<String, BundleState> bundles = new TreeMap<String, BundleState>();
+
+	@Override
+	boolean isValid() {
+		return bundles != null;
+	}
+
+	BundleState get(String bundleId) {
+		return bundles.get(bundleId);
+	}
+
+	void put(String bundleId, BundleState state) {
+		bundles.put(bundleId, state);
+	}
+
+	void remove(String bundleId) {
+		bundles.remove(bundleId);
+	}
+
+	/**
+	 * Forgets bundles which are no longer part of the source file set.
+	 */
+	void retainAll(Set<String> bundleIds) {
+		for (Iterator<String> it = bundles.keySet().iterator(); it.hasNext();) {
+			if (!bundleIds.contains(it.next())) {
+				it.remove();
+			}
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the worker pools of the build step.
+ *
+ * <p>
+ * On Java 21 or later, a pool can run each task on its own virtual thread.
+ * A task blocked on a service call then releases its carrier thread, so
+ * waiting tasks hold no platform thread. The number of tasks running at once
+ * is still bounded, by a semaphore each virtual thread acquires before its
+ * task, so that the service sees no more concurrent calls than with platform
+ * threads. The plugin is built for Java 8, so virtual
+ * threads are looked up by reflection, and pools fall back to a fixed number
+ * of platform threads on older JVMs, and on Java 19 and 20, where virtual
+ * threads are a preview feature which is normally disabled.
+ */
+final class WorkerPools {
+
+	// Thread.ofVirtual(), Thread.Builder.name(String, long), Thread.Builder.factory()
+	// and Executors.newThreadPerTaskExecutor(ThreadFactory), or null if virtual threads are not available
+	private static final Method OF_VIRTUAL;
+	private static final Method NAME;
+	private static final Method FACTORY;
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+	static {
+		Method ofVirtual = null;
+		Method name = null;
+		Method factory = null;
+		Method newThreadPerTaskExecutor = null;
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			name = builderClass.getMethod("name", String.class, long.class);
+			factory = builderClass.getMethod("factory");
+			newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+			// The methods also exist on Java 19 and 20, but throw unless preview features are enabled
+			ofVirtual.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		NAME = name;
+		FACTORY = factory;
+		NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+	}
+
+	private WorkerPools() {
+	}
+
+	/**
+	 * Returns true if this JVM supports virtual threads.
+	 */
+	static boolean isVirtualThreadsSupported() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Returns a pool running each task on a new virtual thread, at most
+	 * {@code maxConcurrency} at once, or null if the JVM does not support
+	 * virtual threads.
+	 */
+	static ExecutorService newVirtualThreadPool(String purpose, int maxConcurrency) {
+		if (OF_VIRTUAL == null) {
+			return null;
+		}
+		try {
+			Object builder = OF_VIRTUAL.invoke(null);
+			builder = NAME.invoke(builder, "Globalization Pipeline " + purpose + " virtual worker #", 1L);
+			ThreadFactory factory = (ThreadFactory) FACTORY.invoke(builder);
+			return new BoundedExecutor((ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory),
+					maxConcurrency);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns a pool of {@code poolSize} platform threads.
+	 */
+	static ExecutorService newPool(String purpose, int poolSize) {
+		return Executors.newFixedThreadPool(poolSize, new WorkerThreadFactory(purpose));
+	}
+
+	/**
+	 * Runs at most a given number of tasks at once on a thread per task
+	 * executor. The tasks over the limit wait for a permit on their own
+	 * virtual thread, which holds no platform thread meanwhile. The semaphore
+	 * is fair, so that tasks start in submission order, which is the order
+	 * their results are consumed in.
+	 */
+	private static final class BoundedExecutor extends AbstractExecutorService {
+
+		private final ExecutorService delegate;
+		private final Semaphore permits;
+
+		BoundedExecutor(ExecutorService delegate, int maxConcurrency) {
+			this.delegate = delegate;
+			this.permits = new Semaphore(Math.max(1, maxConcurrency), true);
+		}
+
+		@Override
+		public void execute(final Runnable command) {
+			delegate.execute(() -> {
+				try {
+					permits.acquire();
+				} catch (InterruptedException e) {
+					// The pool is shut down before the task started
+					if (command instanceof Future) {
+						((Future<?>) command).cancel(false);
+					}
+					return;
+				}
+				try {
+					command.run();
+				} finally {
+					permits.release();
+				}
+			});
+		}
+
+		@Override
+		public void shutdown() {
+			delegate.shutdown();
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			return delegate.shutdownNow();
+		}
+
+		@Override
+		public boolean isShutdown() {
+			return delegate.isShutdown();
+		}
+
+		@Override
+		public boolean isTerminated() {
+			return delegate.isTerminated();
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+			return delegate.awaitTermination(timeout, unit);
+		}
+	}
+}
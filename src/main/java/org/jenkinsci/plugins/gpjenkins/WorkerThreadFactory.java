@@ -0,0 +1,41 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates named daemon threads for the worker pools used by the build step,
+ * so that they are easy to spot in thread dumps and never keep the JVM alive.
+ */
+final class WorkerThreadFactory implements ThreadFactory {
+
+	private final String namePrefix;
+	private final AtomicInteger counter = new AtomicInteger();
+
+	WorkerThreadFactory(String purpose) {
+		this.namePrefix = "Globalization Pipeline " + purpose + " worker #";
+	}
+
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread t = new Thread(r, namePrefix + counter.incrementAndGet());
+		t.setDaemon(true);
+		return t;
+	}
+}
@@ -0,0 +1,548 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringTokenizer;
+import java.util.regex.Pattern;
+
+import hudson.FilePath;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Lists the files of a base directory matching Ant style include and exclude
+ * rules, with the same results as {@link FilePath#list(String, String)}.
+ *
+ * <p>
+ * The directory tree is walked once, on the machine holding it, and include
+ * and exclude rules are evaluated together. Directories which cannot hold an
+ * included file, or which are excluded as a whole, are not entered.
+ *
+ * <p>
+ * Results are cached in the JVM doing the walk, so that form validation and
+ * builds on the same workspace share them. A cached result is reused while
+ * the modification times of the directories walked are unchanged, which only
+ * requires one file system call per directory instead of one per file.
+ * Results are not cached when a directory was modified just before the walk,
+ * since a later change within the file system timestamp granularity could go
+ * unnoticed.
+ */
+final class WorkspaceScanner {
+
+	/** Maximum number of cached results; the least recently used one is dropped first */
+	static final int MAX_CACHED = 8;
+
+	/** Minimum age of the directories of a cached result */
+	static final long RACY_MILLIS = 2000;
+
+	/** Default excludes of Ant, also applied by {@link FilePath#list(String, String)} */
+	private static final String[] DEFAULT_EXCLUDES = {
+			"**/*~", "**/#*#", "**/.#*", "**/%*%", "**/._*",
+			"**/CVS", "**/CVS/**", "**/.cvsignore",
+			"**/SCCS", "**/SCCS/**", "**/vssver.scc",
+			"**/.svn", "**/.svn/**", "**/.DS_Store",
+			"**/.git", "**/.git/**", "**/.gitattributes", "**/.gitignore", "**/.gitmodules",
+			"**/.hg", "**/.hg/**", "**/.hgignore", "**/.hgsub", "**/.hgsubstate", "**/.hgtags",
+			"**/.bzr", "**/.bzr/**", "**/.bzrignore" };
+
+	private static final List<AntPattern> DEFAULT_EXCLUDE_PATTERNS = parse(String.join(",", DEFAULT_EXCLUDES));
+
+	private static final Map<Key, CachedScan> CACHE = new LinkedHashMap<Key, CachedScan>(16, 0.75f, true);
+
+	private WorkspaceScanner() {
+	}
+
+	/**
+	 * Files selected by the rules, and what the exclude rule removed.
+	 */
+	static final class Result implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<String> files;
+		private final int excludedFiles;
+		private final int excludedDirectories;
+
+		Result(List<String> files, int excludedFiles, int excludedDirectories) {
+			this.files = Collections.unmodifiableList(files);
+			this.excludedFiles = excludedFiles;
+			this.excludedDirectories = excludedDirectories;
+		}
+
+		/**
+		 * Returns the paths of the selected files relative to the base
+		 * directory, using '/' as the separator, in sorted order.
+		 */
+		List<String> getFiles() {
+			return files;
+		}
+
+		/**
+		 * Returns the selected files, without a call to the agent.
+		 */
+		FilePath[] getFiles(FilePath baseDirectory) {
+			FilePath[] paths = new FilePath[files.size()];
+			for (int i = 0; i < paths.length; i++) {
+				paths[i] = new FilePath(baseDirectory, files.get(i));
+			}
+			return paths;
+		}
+
+		int getFileCount() {
+			return files.size();
+		}
+
+		/**
+		 * Returns the number of files matching the include rule which were
+		 * removed by the exclude rule, not counting files in excluded directories.
+		 */
+		int getExcludedFiles() {
+			return excludedFiles;
+		}
+
+		/**
+		 * Returns the number of directories excluded as a whole, which could
+		 * hold files matching the include rule.
+		 */
+		int getExcludedDirectories() {
+			return excludedDirectories;
+		}
+
+		boolean hasExclusions() {
+			return excludedFiles > 0 || excludedDirectories > 0;
+		}
+	}
+
+	/**
+	 * Lists the files of the base directory with a single call to the agent
+	 * holding it.
+	 *
+	 * @param includes comma or space separated Ant style include patterns
+	 * @param excludes comma or space separated Ant style exclude patterns, may be empty
+	 */
+	static Result scan(FilePath baseDirectory, String includes, String excludes)
+			throws IOException, InterruptedException {
+		return baseDirectory.act(new Scan(includes, excludes));
+	}
+
+	/**
+	 * Lists the files of the base directories of several resource sets with
+	 * a single call to the agent holding the workspace.
+	 *
+	 * @return the result of each resource set, in order, or null for a set
+	 *         whose base directory does not exist
+	 */
+	static List<Result> scan(FilePath workspace, List<ResourceSet> resourceSets)
+			throws IOException, InterruptedException {
+		List<String> baseDirectories = new ArrayList<String>();
+		for (ResourceSet resourceSet : resourceSets) {
+			baseDirectories.add(workspace.child(resourceSet.getBaseDir().trim()).getRemote());
+		}
+		return workspace.act(new ScanAll(baseDirectories, resourceSets));
+	}
+
+	private static final class Scan extends MasterToSlaveFileCallable<Result> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String includes;
+		private final String excludes;
+
+		Scan(String includes, String excludes) {
+			this.includes = includes;
+			this.excludes = excludes;
+		}
+
+		@Override
+		public Result invoke(File baseDirectory, VirtualChannel channel) throws IOException, InterruptedException {
+			return scanLocal(baseDirectory, includes, excludes);
+		}
+	}
+
+	private static final class ScanAll extends MasterToSlaveFileCallable<List<Result>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<String> baseDirectories;
+		private final List<ResourceSet> resourceSets;
+
+		ScanAll(List<String> baseDirectories, List<ResourceSet> resourceSets) {
+			this.baseDirectories = baseDirectories;
+			this.resourceSets = new ArrayList<ResourceSet>(resourceSets);
+		}
+
+		@Override
+		public List<Result> invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
+			List<Result> results = new ArrayList<Result>();
+			for (int i = 0; i < resourceSets.size(); i++) {
+				ResourceSet resourceSet = resourceSets.get(i);
+				File baseDirectory = new File(baseDirectories.get(i));
+				results.add(baseDirectory.isDirectory() ? scanLocal(baseDirectory, resourceSet.getIncludeRule(),
+						resourceSet.getExcludeRule()) : null);
+			}
+			return results;
+		}
+	}
+
+	static Result scanLocal(File baseDirectory, String includes, String excludes)
+			throws IOException, InterruptedException {
+		Key key = new Key(baseDirectory.getCanonicalPath(), includes, excludes);
+		CachedScan cached;
+		synchronized (CACHE) {
+			cached = CACHE.get(key);
+		}
+		if (cached != null && cached.isCurrent()) {
+			return cached.result;
+		}
+
+		long startedAt = System.currentTimeMillis();
+		Walker walker = new Walker(baseDirectory.toPath(), parse(includes), parse(excludes));
+		Files.walkFileTree(baseDirectory.toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+				walker);
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		Collections.sort(walker.files);
+		Result result = new Result(walker.files, walker.excludedFiles, walker.excludedDirectories);
+
+		synchronized (CACHE) {
+			if (walker.latestModification < startedAt - RACY_MILLIS) {
+				CACHE.put(key, new CachedScan(result, walker.directories));
+				if (CACHE.size() > MAX_CACHED) {
+					Iterator<Key> eldest = CACHE.keySet().iterator();
+					eldest.next();
+					eldest.remove();
+				}
+			} else {
+				CACHE.remove(key);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Walks the directory tree, collecting the selected files and the
+	 * modification times of the directories entered.
+	 */
+	private static final class Walker extends SimpleFileVisitor<Path> {
+
+		private final Path base;
+		private final List<AntPattern> includes;
+		private final List<AntPattern> excludes;
+
+		private final List<String> files = new ArrayList<String>();
+		private final Map<String, Long> directories = new HashMap<String, Long>();
+		private long latestModification;
+		private int excludedFiles;
+		private int excludedDirectories;
+
+		Walker(Path base, List<AntPattern> includes, List<AntPattern> excludes) {
+			this.base = base;
+			this.includes = includes;
+			this.excludes = excludes;
+		}
+
+		@Override
+		public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+			if (Thread.currentThread().isInterrupted()) {
+				return FileVisitResult.TERMINATE;
+			}
+			String[] segments = segments(dir);
+			if (segments.length > 0) {
+				if (matchesAllUnder(DEFAULT_EXCLUDE_PATTERNS, segments) || !matchesStart(includes, segments)) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				if (matchesAllUnder(excludes, segments)) {
+					excludedDirectories++;
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+			}
+			long modified = attrs.lastModifiedTime().toMillis();
+			directories.put(dir.toString(), modified);
+			latestModification = Math.max(latestModification, modified);
+			return FileVisitResult.CONTINUE;
+		}
+
+		@Override
+		public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+			if (!attrs.isRegularFile()) {
+				return FileVisitResult.CONTINUE;
+			}
+			String[] segments = segments(file);
+			if (!matches(includes, segments) || matches(DEFAULT_EXCLUDE_PATTERNS, segments)) {
+				return FileVisitResult.CONTINUE;
+			}
+			if (matches(excludes, segments)) {
+				excludedFiles++;
+			} else {
+				files.add(String.join("/", segments));
+			}
+			return FileVisitResult.CONTINUE;
+		}
+
+		@Override
+		public FileVisitResult visitFileFailed(Path file, IOException e) {
+			// Unreadable entries and symbolic link cycles are skipped, as by Ant
+			return FileVisitResult.CONTINUE;
+		}
+
+		private String[] segments(Path path) {
+			Path relative = base.relativize(path);
+			if (relative.toString().isEmpty()) {
+				return new String[0];
+			}
+			String[] segments = new String[relative.getNameCount()];
+			for (int i = 0; i < segments.length; i++) {
+				segments[i] = relative.getName(i).toString();
+			}
+			return segments;
+		}
+	}
+
+	/**
+	 * A result, and the modification times of the directories it depends on.
+	 */
+	private static final class CachedScan {
+
+		private final Result result;
+		private final Map<String, Long> directories;
+
+		CachedScan(Result result, Map<String, Long> directories) {
+			this.result = result;
+			this.directories = directories;
+		}
+
+		/**
+		 * Returns true if no file was added, removed or renamed in the
+		 * directories walked.
+		 */
+		boolean isCurrent() {
+			for (Map.Entry<String, Long> dir : directories.entrySet()) {
+				try {
+					if (Files.getLastModifiedTime(Paths.get(dir.getKey())).toMillis() != dir.getValue().longValue()) {
+						return false;
+					}
+				} catch (IOException e) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static final class Key {
+
+		private final String baseDirectory;
+		private final String includes;
+		private final String excludes;
+
+		Key(String baseDirectory, String includes, String excludes) {
+			this.baseDirectory = baseDirectory;
+			this.includes = includes;
+			this.excludes = excludes;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return baseDirectory.equals(other.baseDirectory) && Objects.equals(includes, other.includes)
+					&& Objects.equals(excludes, other.excludes);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(baseDirectory, includes, excludes);
+		}
+	}
+
+	private static List<AntPattern> parse(String patterns) {
+		List<AntPattern> parsed = new ArrayList<AntPattern>();
+		if (patterns != null) {
+			StringTokenizer tokens = new StringTokenizer(patterns, ", \t\n\r\f");
+			while (tokens.hasMoreTokens()) {
+				parsed.add(new AntPattern(tokens.nextToken()));
+			}
+		}
+		return parsed;
+	}
+
+	private static boolean matches(List<AntPattern> patterns, String[] path) {
+		for (AntPattern pattern : patterns) {
+			if (pattern.matches(path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean matchesStart(List<AntPattern> patterns, String[] dir) {
+		for (AntPattern pattern : patterns) {
+			if (pattern.matchesStart(dir)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean matchesAllUnder(List<AntPattern> patterns, String[] dir) {
+		for (AntPattern pattern : patterns) {
+			if (pattern.matchesAllUnder(dir)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Ant style path pattern: '**' matches any number of directories, '*'
+	 * any number of characters and '?' one character within a name. A
+	 * pattern ending with '/' matches everything under the directory.
+	 */
+	static final class AntPattern {
+
+		private static final String ANY_DIRS = "**";
+
+		private final String[] segments;
+		private final Pattern[] names;
+
+		AntPattern(String pattern) {
+			String path = pattern.replace('\\', '/');
+			if (path.endsWith("/")) {
+				path = path + ANY_DIRS;
+			}
+			List<String> parsed = new ArrayList<String>();
+			for (String segment : path.split("/")) {
+				if (segment.isEmpty() || (segment.equals(ANY_DIRS) && !parsed.isEmpty()
+						&& parsed.get(parsed.size() - 1).equals(ANY_DIRS))) {
+					continue;
+				}
+				parsed.add(segment);
+			}
+			segments = parsed.toArray(new String[parsed.size()]);
+			names = new Pattern[segments.length];
+			for (int i = 0; i < segments.length; i++) {
+				if (!segments[i].equals(ANY_DIRS)) {
+					names[i] = toRegex(segments[i]);
+				}
+			}
+		}
+
+		private static Pattern toRegex(String name) {
+			StringBuilder regex = new StringBuilder();
+			StringBuilder literal = new StringBuilder();
+			for (char c : name.toCharArray()) {
+				if (c == '*' || c == '?') {
+					if (literal.length() > 0) {
+						regex.append(Pattern.quote(literal.toString()));
+						literal.setLength(0);
+					}
+					regex.append(c == '*' ? ".*" : ".");
+				} else {
+					literal.append(c);
+				}
+			}
+			if (literal.length() > 0) {
+				regex.append(Pattern.quote(literal.toString()));
+			}
+			return Pattern.compile(regex.toString(), Pattern.DOTALL);
+		}
+
+		boolean matches(String[] path) {
+			return match(0, segments.length, path, 0);
+		}
+
+		/**
+		 * Returns true if files under the directory may match the pattern.
+		 */
+		boolean matchesStart(String[] dir) {
+			for (int i = 0; i < dir.length; i++) {
+				if (i >= segments.length) {
+					return false;
+				}
+				if (names[i] == null) {
+					return true;
+				}
+				if (!names[i].matcher(dir[i]).matches()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Returns true if everything under the directory matches the pattern.
+		 */
+		boolean matchesAllUnder(String[] dir) {
+			int last = segments.length - 1;
+			return last >= 0 && names[last] == null && match(0, last, dir, 0);
+		}
+
+		private boolean match(int from, int to, String[] path, int start) {
+			int p = from;
+			int s = start;
+			while (p < to && s < path.length) {
+				if (names[p] == null) {
+					if (p == to - 1) {
+						return true;
+					}
+					for (int k = s; k <= path.length; k++) {
+						if (match(p + 1, to, path, k)) {
+							return true;
+						}
+					}
+					return false;
+				}
+				if (!names[p].matcher(path[s]).matches()) {
+					return false;
+				}
+				p++;
+				s++;
+			}
+			if (s < path.length) {
+				return false;
+			}
+			for (; p < to; p++) {
+				if (names[p] != null) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
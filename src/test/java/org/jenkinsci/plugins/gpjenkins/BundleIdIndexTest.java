@@ -0,0 +1,61 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class BundleIdIndexTest {
+
+	@Test
+	public void snapshotIsSharedUntilRefreshed() throws Exception {
+		final Set<String> service = new HashSet<String>(Arrays.asList("a"));
+		final AtomicInteger loads = new AtomicInteger();
+		BundleIdIndex.Loader loader = () -> {
+			loads.incrementAndGet();
+			return new HashSet<String>(service);
+		};
+		BundleIdIndex index = new BundleIdIndex();
+		long before = System.currentTimeMillis();
+		assertFalse(index.isLoadedSince(before));
+
+		assertEquals(Collections.singleton("a"), index.get(loader));
+		assertTrue(index.isLoadedSince(before));
+
+		// Created by someone else, not seen until the snapshot is refreshed
+		service.add("b");
+		assertEquals(Collections.singleton("a"), index.get(loader));
+		assertEquals(1, loads.get());
+		assertEquals(service, index.refresh(loader));
+		assertEquals(2, loads.get());
+
+		index.added("c");
+		assertTrue(index.get(loader).contains("c"));
+		index.invalidate();
+		assertFalse(index.isLoadedSince(before));
+		assertEquals(service, index.get(loader));
+	}
+}
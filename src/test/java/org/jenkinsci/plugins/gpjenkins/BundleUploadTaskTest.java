@@ -0,0 +1,147 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.g11n.pipeline.client.ResourceEntryData;
+import com.ibm.g11n.pipeline.client.ServiceAccount;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+
+import hudson.FilePath;
+
+public class BundleUploadTaskTest {
+
+	private static final String BUNDLE_ID = "messages";
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	private FakeGlobalizationPipelineServer server;
+	private ResilientServiceClient gpClient;
+	private File source;
+
+	@Before
+	public void startServer() throws Exception {
+		server = new FakeGlobalizationPipelineServer();
+		server.start();
+		gpClient = new ResilientServiceClient(ServiceClient.getInstance(ServiceAccount.getInstance(server.getUrl(),
+				FakeGlobalizationPipelineServer.INSTANCE_ID, "test", "test")), null, 0, 1, 1,
+				new PrintStream(new ByteArrayOutputStream()), new StepMetrics("upload"));
+		source = new File(tmp.getRoot(), "messages.properties");
+	}
+
+	@After
+	public void stopServer() {
+		server.stop();
+	}
+
+	@Test
+	public void deltaUploadSendsOnlyChangedKeys() throws Exception {
+		writeSource("a=A\nb=B\nc=C\n");
+		BundleUploadResult created = upload(false, true, false, 0);
+		assertTrue(created.isCreated());
+		assertEquals(3, created.getEntriesUploaded());
+
+		writeSource("a=A\nb=B2\nc=C\nd=D\n");
+		BundleUploadResult updated = upload(true, true, false, 0);
+		assertFalse(updated.isFailed());
+		assertEquals(2, updated.getEntriesUploaded());
+		assertEquals(1, server.getLatencies(FakeGlobalizationPipelineServer.Operation.UPLOAD_ENTRIES).getCount());
+
+		Map<String, ResourceEntryData> entries = gpClient.getResourceEntries(BUNDLE_ID, "en");
+		assertEquals("B2", entries.get("b").getValue());
+		assertEquals("D", entries.get("d").getValue());
+		assertEquals(4, entries.size());
+	}
+
+	@Test
+	public void deltaUploadSendsNothingForAnUnchangedFile() throws Exception {
+		writeSource("a=A\nb=B\n");
+		upload(false, true, false, 0);
+		int updates = server.getLatencies(FakeGlobalizationPipelineServer.Operation.UPDATE_ENTRIES).getCount();
+
+		BundleUploadResult result = upload(true, true, false, 0);
+		assertEquals(0, result.getEntriesUploaded());
+		assertEquals(updates, server.getLatencies(FakeGlobalizationPipelineServer.Operation.UPDATE_ENTRIES).getCount());
+	}
+
+	@Test
+	public void removedKeysAreDeletedOnlyWhenEnabled() throws Exception {
+		writeSource("a=A\nb=B\nc=C\n");
+		upload(false, true, false, 0);
+
+		writeSource("a=A\nb=B\n");
+		upload(true, true, false, 0);
+		assertEquals(3, gpClient.getResourceEntries(BUNDLE_ID, "en").size());
+
+		upload(true, true, true, 0);
+		Map<String, ResourceEntryData> entries = gpClient.getResourceEntries(BUNDLE_ID, "en");
+		assertEquals(2, entries.size());
+		assertNull(entries.get("c"));
+	}
+
+	@Test
+	public void chunkedUploadOfAnExistingBundleMergesAndDeletes() throws Exception {
+		writeSource("a=A\nb=B\nc=C\n");
+		upload(false, false, false, 0);
+		assertEquals(1, server.getLatencies(FakeGlobalizationPipelineServer.Operation.UPLOAD_ENTRIES).getCount());
+
+		// Replacing the entries chunk by chunk would delete the keys of the other chunks
+		writeSource("a=A\nb=B\nd=D\n");
+		BundleUploadResult result = upload(true, false, false, 2);
+		assertEquals(3, result.getEntriesUploaded());
+		assertEquals(1, server.getLatencies(FakeGlobalizationPipelineServer.Operation.UPLOAD_ENTRIES).getCount());
+
+		Map<String, ResourceEntryData> entries = gpClient.getResourceEntries(BUNDLE_ID, "en");
+		assertEquals(3, entries.size());
+		assertNull(entries.get("c"));
+		assertEquals("D", entries.get("d").getValue());
+	}
+
+	private void writeSource(String content) throws IOException {
+		Files.write(source.toPath(), content.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	private BundleUploadResult upload(boolean bundleExists, boolean deltaUpload, boolean deleteRemovedKeys,
+			int chunkEntries) throws Exception {
+		BundleUploadResult result = new BundleUploadTask(gpClient, new BundleInfoCache(gpClient), BUNDLE_ID,
+				Collections.singletonList(new FilePath(source)), bundleExists, "java", "en",
+				Collections.<String>emptySet(), new FilePath(tmp.getRoot()), false, null, deltaUpload,
+				deleteRemovedKeys, chunkEntries, 0, true).call();
+		assertFalse(result.getLog(), result.isFailed());
+		return result;
+	}
+}
@@ -0,0 +1,542 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jenkinsci.plugins.gpjenkins;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for the Globalization Pipeline REST API, for the tests
+ * and for throughput testing without a service instance. It implements the subset of the v2 API
+ * used by the build step: bundle listing, bundle information and creation,
+ * and upload, update and fetch of resource entries. Target languages are
+ * "translated" as soon as source entries are uploaded, by prefixing the
+ * source value with the language. Sequence numbers sent with the entries are
+ * kept, others are assigned in the order the keys were added.
+ *
+ * <p>
+ * Latency, failures and throttling can be injected, and the handling time of
+ * each operation is recorded, so that the behavior of the build step under a
+ * slow or overloaded service can be measured. Credentials are not checked,
+ * but their rejection can be simulated.
+ */
+final class FakeGlobalizationPipelineServer {
+
+	static final String INSTANCE_ID = "fake-instance";
+
+	private static final String BASE_PATH = "/translate/rest";
+
+	/** Operations of the API, used to group the recorded latencies */
+	enum Operation {
+		LIST_BUNDLES, GET_BUNDLE_INFO, CREATE_BUNDLE, UPLOAD_ENTRIES, UPDATE_ENTRIES, GET_ENTRIES
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final ConcurrentMap<String, Bundle> bundles = new ConcurrentHashMap<String, Bundle>();
+	private final Map<Operation, LatencyRecorder> latencies = new LinkedHashMap<Operation, LatencyRecorder>();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger injectedErrors = new AtomicInteger();
+	private final AtomicInteger throttledRequests = new AtomicInteger();
+	private final AtomicInteger failNext = new AtomicInteger();
+
+	private volatile long latencyMillis;
+	private volatile long latencyJitterMillis;
+	private volatile double errorRate;
+	private volatile double throttleRate;
+	private volatile int maxConcurrentRequests;
+	private volatile boolean rejectCredentials;
+
+	FakeGlobalizationPipelineServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext(BASE_PATH, this::handle);
+		server.setExecutor(executor);
+		for (Operation operation : Operation.values()) {
+			latencies.put(operation, new LatencyRecorder());
+		}
+	}
+
+	void start() {
+		server.start();
+	}
+
+	void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Returns the service URL to configure in the build step.
+	 */
+	String getUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + BASE_PATH;
+	}
+
+	/**
+	 * Adds a fixed delay to every request, plus a random delay up to the jitter.
+	 */
+	void setLatency(long latencyMillis, long latencyJitterMillis) {
+		this.latencyMillis = latencyMillis;
+		this.latencyJitterMillis = latencyJitterMillis;
+	}
+
+	/**
+	 * Sets the ratio of requests failing with an internal server error.
+	 */
+	void setErrorRate(double errorRate) {
+		this.errorRate = errorRate;
+	}
+
+	/**
+	 * Sets the ratio of requests rejected with "429 Too Many Requests".
+	 */
+	void setThrottleRate(double throttleRate) {
+		this.throttleRate = throttleRate;
+	}
+
+	/**
+	 * Rejects requests with "429 Too Many Requests" while this many requests
+	 * are in progress, or never if 0.
+	 */
+	void setMaxConcurrentRequests(int maxConcurrentRequests) {
+		this.maxConcurrentRequests = maxConcurrentRequests;
+	}
+
+	/**
+	 * Rejects all requests with "401 Unauthorized", as after the credentials
+	 * were revoked.
+	 */
+	void setRejectCredentials(boolean rejectCredentials) {
+		this.rejectCredentials = rejectCredentials;
+	}
+
+	/**
+	 * Fails the given number of next requests with an internal server error.
+	 */
+	void failNextRequests(int count) {
+		failNext.set(count);
+	}
+
+	LatencyRecorder getLatencies(Operation operation) {
+		return latencies.get(operation);
+	}
+
+	int getInjectedErrors() {
+		return injectedErrors.get();
+	}
+
+	int getThrottledRequests() {
+		return throttledRequests.get();
+	}
+
+	int getBundleCount() {
+		return bundles.size();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		long start = System.nanoTime();
+		Operation operation = null;
+		int concurrent = inFlight.incrementAndGet();
+		try {
+			List<String> segments = segments(exchange.getRequestURI());
+			// instanceId, "v2", "bundles", bundleId, language
+			if (segments.size() < 3 || !segments.get(1).equals("v2") || !segments.get(2).equals("bundles")) {
+				respond(exchange, 404, error("Not found"));
+				return;
+			}
+			String method = exchange.getRequestMethod();
+			String bundleId = segments.size() > 3 ? segments.get(3) : null;
+			String language = segments.size() > 4 ? segments.get(4) : null;
+			operation = operationOf(method, bundleId, language);
+			if (operation == null) {
+				respond(exchange, 405, error("Method not allowed"));
+				return;
+			}
+
+			sleep();
+			if (rejectCredentials) {
+				respond(exchange, 401, error("Unauthorized"));
+				return;
+			}
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			int limit = maxConcurrentRequests;
+			if ((limit > 0 && concurrent > limit) || random.nextDouble() < throttleRate) {
+				throttledRequests.incrementAndGet();
+				exchange.getResponseHeaders().add("Retry-After", "1");
+				respond(exchange, 429, error("Too Many Requests"));
+				return;
+			}
+			if (failNext.getAndUpdate(n -> Math.max(0, n - 1)) > 0 || random.nextDouble() < errorRate) {
+				injectedErrors.incrementAndGet();
+				respond(exchange, 500, error("Internal Server Error (injected)"));
+				return;
+			}
+
+			switch (operation) {
+			case LIST_BUNDLES:
+				respond(exchange, 200, listBundles());
+				break;
+			case GET_BUNDLE_INFO:
+				respond(exchange, 200, getBundleInfo(bundleId));
+				break;
+			case CREATE_BUNDLE:
+				respond(exchange, 200, createBundle(bundleId, readBody(exchange)));
+				break;
+			case UPLOAD_ENTRIES:
+				respond(exchange, 200, putEntries(bundleId, language, readBody(exchange), true));
+				break;
+			case UPDATE_ENTRIES:
+				respond(exchange, 200, putEntries(bundleId, language, readBody(exchange), false));
+				break;
+			case GET_ENTRIES:
+				respond(exchange, 200, getEntries(bundleId, language));
+				break;
+			default:
+				respond(exchange, 405, error("Method not allowed"));
+			}
+		} catch (RuntimeException e) {
+			respond(exchange, 400, error("Bad request: " + e.getMessage()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			respond(exchange, 503, error("Server stopping"));
+		} finally {
+			inFlight.decrementAndGet();
+			if (operation != null) {
+				latencies.get(operation).record(System.nanoTime() - start);
+			}
+		}
+	}
+
+	private static Operation operationOf(String method, String bundleId, String language) {
+		if (bundleId == null) {
+			return "GET".equals(method) ? Operation.LIST_BUNDLES : null;
+		}
+		if (language == null) {
+			switch (method) {
+			case "GET":
+				return Operation.GET_BUNDLE_INFO;
+			case "PUT":
+				return Operation.CREATE_BUNDLE;
+			default:
+				return null;
+			}
+		}
+		switch (method) {
+		case "GET":
+			return Operation.GET_ENTRIES;
+		case "PUT":
+			return Operation.UPLOAD_ENTRIES;
+		case "POST":
+			return Operation.UPDATE_ENTRIES;
+		default:
+			return null;
+		}
+	}
+
+	private JsonObject listBundles() {
+		JsonArray ids = new JsonArray();
+		for (String id : new TreeMap<String, Bundle>(bundles).keySet()) {
+			ids.add(new JsonPrimitive(id));
+		}
+		JsonObject response = success();
+		response.add("bundleIds", ids);
+		return response;
+	}
+
+	private JsonObject getBundleInfo(String bundleId) {
+		Bundle bundle = bundles.get(bundleId);
+		if (bundle == null) {
+			return error("Bundle " + bundleId + " does not exist");
+		}
+		JsonObject info = new JsonObject();
+		synchronized (bundle) {
+			info.addProperty("sourceLanguage", bundle.sourceLanguage);
+			JsonArray targets = new JsonArray();
+			for (String target : bundle.targetLanguages) {
+				targets.add(new JsonPrimitive(target));
+			}
+			info.add("targetLanguages", targets);
+			info.addProperty("readOnly", false);
+			info.addProperty("updatedBy", "fake");
+			info.addProperty("updatedAt", formatDate(bundle.updatedAt));
+		}
+		JsonObject response = success();
+		response.add("bundle", info);
+		return response;
+	}
+
+	private JsonObject createBundle(String bundleId, JsonObject body) {
+		Bundle bundle = new Bundle(body.get("sourceLanguage").getAsString());
+		JsonElement targets = body.get("targetLanguages");
+		if (targets != null && targets.isJsonArray()) {
+			for (JsonElement target : targets.getAsJsonArray()) {
+				bundle.targetLanguages.add(target.getAsString());
+			}
+		}
+		if (bundles.putIfAbsent(bundleId, bundle) != null) {
+			return error("Bundle " + bundleId + " already exists");
+		}
+		return success();
+	}
+
+	/**
+	 * Stores entries of the source language, replacing all entries or merging
+	 * them, and translates them to the target languages. A null entry in
+	 * merge mode deletes the key.
+	 */
+	private JsonObject putEntries(String bundleId, String language, JsonObject body, boolean replace) {
+		Bundle bundle = bundles.get(bundleId);
+		if (bundle == null) {
+			return error("Bundle " + bundleId + " does not exist");
+		}
+		// Entries may be sent as they are or wrapped in a "resourceEntries" member
+		JsonObject entries = body.has("resourceEntries") && body.get("resourceEntries").isJsonObject()
+				? body.getAsJsonObject("resourceEntries") : body;
+		synchronized (bundle) {
+			Map<String, String> values = bundle.entries(language);
+			if (replace) {
+				values.clear();
+			}
+			for (Map.Entry<String, JsonElement> entry : entries.entrySet()) {
+				JsonElement data = entry.getValue();
+				if (data == null || data.isJsonNull()) {
+					values.remove(entry.getKey());
+				} else if (data.isJsonPrimitive()) {
+					values.put(entry.getKey(), data.getAsString());
+				} else {
+					JsonObject object = data.getAsJsonObject();
+					if (object.has("value")) {
+						values.put(entry.getKey(), object.get("value").getAsString());
+					}
+					if (object.has("sequenceNumber") && !object.get("sequenceNumber").isJsonNull()) {
+						bundle.sequenceNumbers.put(entry.getKey(), object.get("sequenceNumber").getAsInt());
+					}
+				}
+			}
+			if (language.equals(bundle.sourceLanguage)) {
+				bundle.sequenceNumbers.keySet().retainAll(values.keySet());
+			}
+			if (language.equals(bundle.sourceLanguage)) {
+				bundle.translate();
+			}
+			bundle.updatedAt = new Date();
+		}
+		return success();
+	}
+
+	private JsonObject getEntries(String bundleId, String language) {
+		Bundle bundle = bundles.get(bundleId);
+		if (bundle == null) {
+			return error("Bundle " + bundleId + " does not exist");
+		}
+		JsonObject entries = new JsonObject();
+		JsonObject strings = new JsonObject();
+		synchronized (bundle) {
+			Map<String, String> source = bundle.entries(bundle.sourceLanguage);
+			for (Map.Entry<String, String> entry : bundle.entries(language).entrySet()) {
+				JsonObject data = new JsonObject();
+				data.addProperty("value", entry.getValue());
+				data.addProperty("sourceValue", source.get(entry.getKey()));
+				data.addProperty("reviewed", false);
+				data.addProperty("translationStatus", "TRANSLATED");
+				data.addProperty("sequenceNumber", bundle.sequenceNumberOf(entry.getKey()));
+				data.addProperty("updatedBy", "fake");
+				data.addProperty("updatedAt", formatDate(bundle.updatedAt));
+				entries.add(entry.getKey(), data);
+				strings.addProperty(entry.getKey(), entry.getValue());
+			}
+		}
+		JsonObject response = success();
+		response.add("resourceEntries", entries);
+		response.add("resourceStrings", strings);
+		return response;
+	}
+
+	private void sleep() throws InterruptedException {
+		long delay = latencyMillis;
+		long jitter = latencyJitterMillis;
+		if (jitter > 0) {
+			delay += ThreadLocalRandom.current().nextLong(jitter + 1);
+		}
+		if (delay > 0) {
+			TimeUnit.MILLISECONDS.sleep(delay);
+		}
+	}
+
+	private static List<String> segments(URI uri) throws IOException {
+		String path = uri.getRawPath().substring(BASE_PATH.length());
+		List<String> segments = new ArrayList<String>();
+		for (String segment : path.split("/")) {
+			if (!segment.isEmpty()) {
+				segments.add(URLDecoder.decode(segment, "UTF-8"));
+			}
+		}
+		return segments;
+	}
+
+	private static JsonObject readBody(HttpExchange exchange) throws IOException {
+		try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+			return new JsonParser().parse(reader).getAsJsonObject();
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, JsonObject body) throws IOException {
+		byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private static JsonObject success() {
+		JsonObject response = new JsonObject();
+		response.addProperty("status", "SUCCESS");
+		return response;
+	}
+
+	private static JsonObject error(String message) {
+		JsonObject response = new JsonObject();
+		response.addProperty("status", "ERROR");
+		response.addProperty("message", message);
+		return response;
+	}
+
+	private static String formatDate(Date date) {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format.format(date);
+	}
+
+	/**
+	 * Content of a bundle: the values of each language, by key.
+	 */
+	private static final class Bundle {
+
+		private final String sourceLanguage;
+		private final List<String> targetLanguages = new ArrayList<String>();
+		private final Map<String, Map<String, String>> languages = new LinkedHashMap<String, Map<String, String>>();
+		/** Sequence numbers of the source keys, shared by all languages */
+		private final Map<String, Integer> sequenceNumbers = new HashMap<String, Integer>();
+		private int lastSequenceNumber;
+		private Date updatedAt = new Date();
+
+		Bundle(String sourceLanguage) {
+			this.sourceLanguage = sourceLanguage;
+		}
+
+		Map<String, String> entries(String language) {
+			Map<String, String> entries = languages.get(language);
+			if (entries == null) {
+				entries = new LinkedHashMap<String, String>();
+				languages.put(language, entries);
+			}
+			return entries;
+		}
+
+		int sequenceNumberOf(String key) {
+			Integer sequenceNumber = sequenceNumbers.get(key);
+			if (sequenceNumber == null) {
+				sequenceNumber = Integer.valueOf(++lastSequenceNumber);
+				sequenceNumbers.put(key, sequenceNumber);
+			} else {
+				lastSequenceNumber = Math.max(lastSequenceNumber, sequenceNumber.intValue());
+			}
+			return sequenceNumber.intValue();
+		}
+
+		void translate() {
+			Map<String, String> source = entries(sourceLanguage);
+			for (String target : targetLanguages) {
+				Map<String, String> translated = entries(target);
+				translated.keySet().retainAll(source.keySet());
+				for (Map.Entry<String, String> entry : source.entrySet()) {
+					translated.put(entry.getKey(), "[" + target + "] " + entry.getValue());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Latencies of one operation, in nanoseconds.
+	 */
+	static final class LatencyRecorder {
+
+		private long[] samples = new long[1024];
+		private int count;
+
+		synchronized void record(long nanos) {
+			if (count == samples.length) {
+				samples = Arrays.copyOf(samples, count * 2);
+			}
+			samples[count++] = nanos;
+		}
+
+		synchronized int getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the given percentile in milliseconds, or 0 without samples.
+		 */
+		synchronized double getPercentileMillis(double percentile) {
+			if (count == 0) {
+				return 0;
+			}
+			long[] sorted = Arrays.copyOf(samples, count);
+			Arrays.sort(sorted);
+			int index = (int) Math.ceil(percentile / 100 * count) - 1;
+			return sorted[Math.max(0, Math.min(index, count - 1))] / 1e6;
+		}
+
+		synchronized void reset() {
+			count = 0;
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hudson.FilePath;
+import hudson.util.Secret;
+import hudson.util.StreamTaskListener;
+
+/**
+ * Runs the upload and download goals end to end against a
+ * {@link FakeGlobalizationPipelineServer}, as on an agent, since there is no
+ * Jenkins controller in the test.
+ */
+public class GlobalizationPipelineRunnerTest {
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	private FakeGlobalizationPipelineServer server;
+	private File workspace;
+
+	@Before
+	public void startServer() throws Exception {
+		server = new FakeGlobalizationPipelineServer();
+		server.start();
+		workspace = tmp.getRoot();
+		File dir = new File(workspace, "src/nls");
+		dir.mkdirs();
+		Files.write(new File(dir, "Messages.properties").toPath(),
+				"greeting=Hello\nfarewell=Goodbye\n".getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	@After
+	public void stopServer() {
+		server.stop();
+	}
+
+	@Test
+	public void uploadedBundlesAreDownloadedTranslated() throws Exception {
+		run("upload", null, null);
+		assertEquals(1, server.getBundleCount());
+
+		run("download", null, null);
+		Properties translated = new Properties();
+		try (Reader reader = Files.newBufferedReader(new File(workspace, "out/nls/Messages_fr.properties").toPath(),
+				StandardCharsets.ISO_8859_1)) {
+			translated.load(reader);
+		}
+		assertEquals("[fr] Hello", translated.getProperty("greeting"));
+		assertEquals("[fr] Goodbye", translated.getProperty("farewell"));
+	}
+
+	@Test
+	public void incrementalUploadSkipsUnchangedBundles() throws Exception {
+		UploadManifest manifest = new UploadManifest();
+		run("upload", manifest, null);
+		int uploads = server.getLatencies(FakeGlobalizationPipelineServer.Operation.UPLOAD_ENTRIES).getCount();
+		assertEquals(1, uploads);
+
+		run("upload", manifest, null);
+		assertEquals(uploads, server.getLatencies(FakeGlobalizationPipelineServer.Operation.UPLOAD_ENTRIES).getCount());
+
+		Files.write(new File(workspace, "src/nls/Messages.properties").toPath(),
+				"greeting=Hi\n".getBytes(StandardCharsets.ISO_8859_1));
+		run("upload", manifest, null);
+		assertTrue(server.getLatencies(FakeGlobalizationPipelineServer.Operation.UPLOAD_ENTRIES).getCount()
+				+ server.getLatencies(FakeGlobalizationPipelineServer.Operation.UPDATE_ENTRIES).getCount() > uploads);
+	}
+
+	@Test
+	public void incrementalDownloadSkipsUnchangedOutput() throws Exception {
+		run("upload", null, null);
+		DownloadManifest manifest = new DownloadManifest();
+		run("download", null, manifest);
+		int fetches = server.getLatencies(FakeGlobalizationPipelineServer.Operation.GET_ENTRIES).getCount();
+
+		run("download", null, manifest);
+		assertEquals(fetches, server.getLatencies(FakeGlobalizationPipelineServer.Operation.GET_ENTRIES).getCount());
+
+		// A deleted output file is exported again
+		new File(workspace, "out/nls/Messages_fr.properties").delete();
+		run("download", null, manifest);
+		assertTrue(new File(workspace, "out/nls/Messages_fr.properties").isFile());
+	}
+
+	private void run(String goal, UploadManifest manifest, DownloadManifest downloadManifest) throws Exception {
+		GlobalizationPipelineBuilder builder = new GlobalizationPipelineBuilder(
+				FakeGlobalizationPipelineServer.INSTANCE_ID, server.getUrl(), "test", secret("test"), goal, "src",
+				"**/*.properties", "", "en", "java", "{\"fr\":\"fr\"}", "bcp47_underscore", false, "merge_to_src",
+				"lang_suffix", "out", true);
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		GlobalizationPipelineRunner.Summary summary = new GlobalizationPipelineRunner(builder, manifest,
+				downloadManifest, true).execute(new FilePath(workspace), new StreamTaskListener(log), true);
+		assertNull(log.toString("UTF-8"), summary.getResult());
+	}
+
+	/**
+	 * Creates a secret without a running Jenkins, which {@link Secret#fromString(String)}
+	 * needs to look up the encryption key.
+	 */
+	private static Secret secret(String value) throws ReflectiveOperationException {
+		Constructor<Secret> constructor = Secret.class.getDeclaredConstructor(String.class);
+		constructor.setAccessible(true);
+		return constructor.newInstance(value);
+	}
+}
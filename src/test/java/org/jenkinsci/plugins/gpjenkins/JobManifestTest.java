@@ -0,0 +1,111 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JobManifestTest {
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void savedManifestIsLoadedBack() throws IOException {
+		File file = JobManifest.locate(tmp.getRoot(), UploadManifest.PREFIX, "url", "instance");
+		UploadManifest manifest = new UploadManifest();
+		manifest.put("bundle", state("messages.properties", "digest"));
+		manifest.save(file);
+
+		UploadManifest loaded = JobManifest.load(file, UploadManifest.class);
+		assertEquals(state("messages.properties", "digest"), loaded.get("bundle"));
+
+		DownloadManifest downloadManifest = new DownloadManifest();
+		DownloadManifest.ExportState exportState = new DownloadManifest.ExportState(1000L, "source", "settings",
+				"out/messages_fr.properties", "output", true);
+		downloadManifest.put("bundle", "fr", exportState);
+		File downloadFile = JobManifest.locate(tmp.getRoot(), DownloadManifest.PREFIX, "url", "instance");
+		downloadManifest.save(downloadFile);
+		assertEquals(exportState, JobManifest.load(downloadFile, DownloadManifest.class).get("bundle", "fr"));
+	}
+
+	@Test
+	public void saveReplacesTheFileWithoutLeavingTemporaryFiles() throws IOException {
+		File file = JobManifest.locate(tmp.getRoot(), UploadManifest.PREFIX, "url");
+		UploadManifest manifest = new UploadManifest();
+		manifest.put("bundle", state("a.properties", "1"));
+		manifest.save(file);
+		manifest.put("bundle", state("a.properties", "2"));
+		manifest.save(file);
+
+		assertEquals(Arrays.asList(file.getName()), Arrays.asList(file.getParentFile().list()));
+		assertEquals(state("a.properties", "2"), JobManifest.load(file, UploadManifest.class).get("bundle"));
+	}
+
+	@Test
+	public void corruptFileGivesAnEmptyManifest() throws IOException {
+		File file = JobManifest.locate(tmp.getRoot(), UploadManifest.PREFIX, "url");
+		UploadManifest manifest = new UploadManifest();
+		manifest.put("bundle", state("a.properties", "1"));
+		manifest.save(file);
+
+		// As left by a crash of an earlier release, which wrote the file in place
+		byte[] content = Files.readAllBytes(file.toPath());
+		Files.write(file.toPath(), Arrays.copyOf(content, content.length / 2));
+		assertNull(JobManifest.load(file, UploadManifest.class).get("bundle"));
+
+		Files.write(file.toPath(), "not json".getBytes(StandardCharsets.UTF_8));
+		assertNull(JobManifest.load(file, UploadManifest.class).get("bundle"));
+
+		Files.write(file.toPath(), "{\"bundles\":null}".getBytes(StandardCharsets.UTF_8));
+		assertNull(JobManifest.load(file, UploadManifest.class).get("bundle"));
+	}
+
+	@Test
+	public void missingFileGivesAnEmptyManifest() {
+		File file = new File(tmp.getRoot(), "missing.json");
+		assertNull(JobManifest.load(file, DownloadManifest.class).get("bundle", "fr"));
+	}
+
+	@Test
+	public void eachConfigurationHasItsOwnFile() {
+		File root = tmp.getRoot();
+		assertEquals(JobManifest.locate(root, UploadManifest.PREFIX, "url", "src"),
+				JobManifest.locate(root, UploadManifest.PREFIX, "url", " src "));
+		assertNotEquals(JobManifest.locate(root, UploadManifest.PREFIX, "url", "src"),
+				JobManifest.locate(root, UploadManifest.PREFIX, "url", "res"));
+		assertNotEquals(JobManifest.locate(root, UploadManifest.PREFIX, "url"),
+				JobManifest.locate(root, DownloadManifest.PREFIX, "url"));
+	}
+
+	private static UploadManifest.BundleState state(String file, String digest) {
+		UploadManifest.BundleState state = new UploadManifest.BundleState(Arrays.asList("fr", "de"));
+		state.putFile(file, digest);
+		return state;
+	}
+}
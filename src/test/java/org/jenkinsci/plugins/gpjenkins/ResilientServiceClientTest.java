@@ -0,0 +1,175 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.g11n.pipeline.client.ServiceAccount;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.client.ServiceException;
+
+public class ResilientServiceClientTest {
+
+	private static final Pattern LIMIT = Pattern.compile("concurrency limit : (\\d+)/");
+	private static final Pattern RETRIES = Pattern.compile("retries : (\\d+)");
+
+	private FakeGlobalizationPipelineServer server;
+	private ByteArrayOutputStream log;
+
+	@Before
+	public void startServer() throws Exception {
+		server = new FakeGlobalizationPipelineServer();
+		server.start();
+		log = new ByteArrayOutputStream();
+	}
+
+	@After
+	public void stopServer() {
+		server.stop();
+	}
+
+	@Test
+	public void transientFailuresAreRetried() throws Exception {
+		ResilientServiceClient gpClient = client(3, 1, 1);
+		server.failNextRequests(2);
+
+		assertTrue(gpClient.getBundleIds().isEmpty());
+		assertEquals(2, server.getInjectedErrors());
+		assertEquals(3, count(FakeGlobalizationPipelineServer.Operation.LIST_BUNDLES));
+		assertEquals(2, statistic(gpClient, RETRIES));
+	}
+
+	@Test
+	public void retriesAreBounded() throws Exception {
+		ResilientServiceClient gpClient = client(1, 1, 1);
+		server.failNextRequests(5);
+		try {
+			gpClient.getBundleIds();
+			fail("The call should fail after its retry");
+		} catch (ServiceException e) {
+			// expected
+		}
+		assertEquals(2, count(FakeGlobalizationPipelineServer.Operation.LIST_BUNDLES));
+	}
+
+	@Test
+	public void clientErrorsAreNotRetried() throws Exception {
+		ResilientServiceClient gpClient = client(3, 1, 1);
+		try {
+			gpClient.getBundleInfo("missing");
+			fail("The bundle does not exist");
+		} catch (ServiceException e) {
+			// expected
+		}
+		assertEquals(1, count(FakeGlobalizationPipelineServer.Operation.GET_BUNDLE_INFO));
+		assertEquals(0, statistic(gpClient, RETRIES));
+	}
+
+	@Test
+	public void rejectedCredentialsInvalidateTheRegistration() throws Exception {
+		ServiceClientRegistry.Registration registration = ServiceClientRegistry.get(server.getUrl(),
+				FakeGlobalizationPipelineServer.INSTANCE_ID, "test", "test");
+		registration.validated();
+		ResilientServiceClient gpClient = new ResilientServiceClient(registration.getClient(), registration, 3, 1, 1,
+				new PrintStream(log, true), new StepMetrics("download"));
+		server.setRejectCredentials(true);
+		try {
+			gpClient.getBundleIds();
+			fail("The credentials are rejected");
+		} catch (ServiceException e) {
+			assertTrue(e.getMessage(), ResilientServiceClient.isRejected(e));
+		}
+		assertEquals(1, count(FakeGlobalizationPipelineServer.Operation.LIST_BUNDLES));
+		assertFalse(registration.isValidated());
+		assertNull(ServiceClientRegistry.find(server.getUrl(), FakeGlobalizationPipelineServer.INSTANCE_ID, "test",
+				"test"));
+	}
+
+	@Test
+	public void circuitOpensAfterConsecutiveFailures() throws Exception {
+		ResilientServiceClient gpClient = client(0, 1, 1);
+		server.failNextRequests(ResilientServiceClient.BREAKER_THRESHOLD);
+		for (int i = 0; i < ResilientServiceClient.BREAKER_THRESHOLD; i++) {
+			try {
+				gpClient.getBundleIds();
+				fail("The service fails");
+			} catch (ServiceException e) {
+				// expected
+			}
+		}
+
+		// The service has recovered, but calls are suspended until the circuit is half open
+		try {
+			gpClient.getBundleIds();
+			fail("The circuit should be open");
+		} catch (ServiceException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("calls are suspended"));
+		}
+		assertEquals(ResilientServiceClient.BREAKER_THRESHOLD,
+				count(FakeGlobalizationPipelineServer.Operation.LIST_BUNDLES));
+		assertTrue(log.toString().contains("suspending calls"));
+	}
+
+	@Test
+	public void concurrencyLimitIsHalvedWhenThrottledAndGrowsBack() throws Exception {
+		ResilientServiceClient gpClient = client(0, 8, 8);
+		server.setThrottleRate(1);
+		try {
+			gpClient.getBundleIds();
+			fail("The call should be throttled");
+		} catch (ServiceException e) {
+			assertTrue(e.getMessage(), ResilientServiceClient.isThrottled(e));
+		}
+		assertEquals(4, statistic(gpClient, LIMIT));
+
+		server.setThrottleRate(0);
+		for (int i = 0; i < 10; i++) {
+			gpClient.getBundleIds();
+		}
+		int limit = statistic(gpClient, LIMIT);
+		assertTrue("limit " + limit, limit > 4 && limit <= 8);
+	}
+
+	private ResilientServiceClient client(int maxRetries, int initialConcurrency, int maxConcurrency) {
+		return new ResilientServiceClient(ServiceClient.getInstance(ServiceAccount.getInstance(server.getUrl(),
+				FakeGlobalizationPipelineServer.INSTANCE_ID, "test", "test")), null, maxRetries, initialConcurrency,
+				maxConcurrency, new PrintStream(log, true), new StepMetrics("upload"));
+	}
+
+	private int count(FakeGlobalizationPipelineServer.Operation operation) {
+		return server.getLatencies(operation).getCount();
+	}
+
+	private static int statistic(ResilientServiceClient gpClient, Pattern pattern) {
+		Matcher matcher = pattern.matcher(gpClient.getStatistics());
+		assertTrue(gpClient.getStatistics(), matcher.find());
+		return Integer.parseInt(matcher.group(1));
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.g11n.pipeline.client.NewBundleData;
+import com.ibm.g11n.pipeline.client.ResourceEntryData;
+import com.ibm.g11n.pipeline.client.ServiceAccount;
+import com.ibm.g11n.pipeline.client.ServiceClient;
+import com.ibm.g11n.pipeline.resfilter.ResourceString;
+
+public class ResourceEntryBatcherTest {
+
+	private static final String BUNDLE_ID = "messages";
+
+	private FakeGlobalizationPipelineServer server;
+	private ResilientServiceClient gpClient;
+
+	@Before
+	public void startServer() throws Exception {
+		server = new FakeGlobalizationPipelineServer();
+		server.start();
+		gpClient = new ResilientServiceClient(ServiceClient.getInstance(ServiceAccount.getInstance(server.getUrl(),
+				FakeGlobalizationPipelineServer.INSTANCE_ID, "test", "test")), null, 0, 1, 1,
+				new PrintStream(new ByteArrayOutputStream()), new StepMetrics("upload"));
+		gpClient.createBundle(BUNDLE_ID, new NewBundleData("en"));
+	}
+
+	@After
+	public void stopServer() {
+		server.stop();
+	}
+
+	@Test
+	public void replaceModeUploadsTheFirstBatchAndMergesTheOthers() throws Exception {
+		ResourceEntryBatcher batcher = new ResourceEntryBatcher(gpClient, BUNDLE_ID, "en", true, 2, 0);
+		for (ResourceString resString : strings(5)) {
+			batcher.add(resString);
+		}
+		batcher.finish();
+
+		assertEquals(3, batcher.getRequests());
+		assertEquals(5, batcher.getEntriesSent());
+		assertEquals(1, server.getLatencies(FakeGlobalizationPipelineServer.Operation.UPLOAD_ENTRIES).getCount());
+		assertEquals(2, server.getLatencies(FakeGlobalizationPipelineServer.Operation.UPDATE_ENTRIES).getCount());
+		assertEquals(5, gpClient.getResourceEntries(BUNDLE_ID, "en").size());
+	}
+
+	@Test
+	public void updateModeKeepsTheOtherEntries() throws Exception {
+		ResourceEntryBatcher upload = new ResourceEntryBatcher(gpClient, BUNDLE_ID, "en", true, 0, 0);
+		upload.add(ResourceString.with("existing", "Existing").build());
+		upload.finish();
+
+		ResourceEntryBatcher batcher = new ResourceEntryBatcher(gpClient, BUNDLE_ID, "en", false, 0, 0);
+		for (ResourceString resString : strings(3)) {
+			batcher.add(resString);
+		}
+		batcher.finish();
+
+		assertEquals(1, batcher.getRequests());
+		assertEquals(1, server.getLatencies(FakeGlobalizationPipelineServer.Operation.UPLOAD_ENTRIES).getCount());
+		assertEquals(1, server.getLatencies(FakeGlobalizationPipelineServer.Operation.UPDATE_ENTRIES).getCount());
+		Map<String, ResourceEntryData> entries = gpClient.getResourceEntries(BUNDLE_ID, "en");
+		assertEquals(4, entries.size());
+		assertEquals("Existing", entries.get("existing").getValue());
+	}
+
+	@Test
+	public void batchesAreLimitedByTheirSize() throws Exception {
+		List<ResourceString> resStrings = strings(3);
+		// Room for one entry per request
+		long maxBytes = ResourceEntryBatcher.utf8Length("key0") + ResourceEntryBatcher.utf8Length("Value 0") + 100;
+		ResourceEntryBatcher batcher = new ResourceEntryBatcher(gpClient, BUNDLE_ID, "en", false, 0, maxBytes);
+		for (ResourceString resString : resStrings) {
+			batcher.add(resString);
+		}
+		batcher.finish();
+
+		assertEquals(3, batcher.getRequests());
+		assertEquals(3, batcher.getEntriesSent());
+		assertFalse(ResourceEntryBatcher.fitsInOneRequest(resStrings, 0, maxBytes));
+		assertTrue(ResourceEntryBatcher.fitsInOneRequest(resStrings, 0, maxBytes * 3));
+		assertFalse(ResourceEntryBatcher.fitsInOneRequest(resStrings, 2, 0));
+		assertTrue(ResourceEntryBatcher.fitsInOneRequest(resStrings, 0, 0));
+	}
+
+	@Test
+	public void deletionsAreSentWithTheUpdates() throws Exception {
+		ResourceEntryBatcher upload = new ResourceEntryBatcher(gpClient, BUNDLE_ID, "en", true, 0, 0);
+		for (ResourceString resString : strings(3)) {
+			upload.add(resString);
+		}
+		upload.finish();
+
+		ResourceEntryBatcher batcher = new ResourceEntryBatcher(gpClient, BUNDLE_ID, "en", false, 0, 0);
+		batcher.add(ResourceString.with("key0", "Changed").build());
+		batcher.delete("key2");
+		batcher.finish();
+
+		assertEquals(1, batcher.getRequests());
+		assertEquals(1, batcher.getEntriesSent());
+		assertEquals(1, batcher.getEntriesDeleted());
+		Map<String, ResourceEntryData> entries = gpClient.getResourceEntries(BUNDLE_ID, "en");
+		assertEquals("Changed", entries.get("key0").getValue());
+		assertNull(entries.get("key2"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void deletionsAreRejectedInReplaceMode() throws Exception {
+		new ResourceEntryBatcher(gpClient, BUNDLE_ID, "en", true, 0, 0).delete("key0");
+	}
+
+	@Test
+	public void utf8LengthCountsEncodedBytes() {
+		assertEquals(3, ResourceEntryBatcher.utf8Length("abc"));
+		assertEquals(2, ResourceEntryBatcher.utf8Length("é"));
+		assertEquals(3, ResourceEntryBatcher.utf8Length("日"));
+		assertEquals(4, ResourceEntryBatcher.utf8Length(new String(Character.toChars(0x1f600))));
+		assertEquals(0, ResourceEntryBatcher.utf8Length(null));
+	}
+
+	private static List<ResourceString> strings(int count) {
+		List<ResourceString> resStrings = new ArrayList<ResourceString>();
+		for (int i = 0; i < count; i++) {
+			resStrings.add(ResourceString.with("key" + i, "Value " + i).build());
+		}
+		return resStrings;
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright IBM Corp ©. 2017,2018
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jenkinsci.plugins.gpjenkins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hudson.FilePath;
+
+public class WorkspaceScannerTest {
+
+	/** Files of the tree compared with {@link FilePath#list(String, String)}, including default excludes */
+	private static final String[] FIXTURE = {
+			"a.properties", "b.json", "x1.json", "README",
+			"nls/a.properties", "nls/a_fr.properties", "nls/b.json", "nls/sub/c.properties", "nls/sub/deep/d.json",
+			"src/main/nls/x1.json", "src/main/nls/xy.json", "src/test/nls/x2.json",
+			"build/a.properties", "build/nls/b.properties",
+			"a.properties~", "nls/#a.properties#", "nls/.#a.properties", "nls/%a%", "nls/._a.properties",
+			"CVS/Entries", "nls/CVS/a.properties", "nls/.cvsignore", "SCCS/a.properties", "nls/vssver.scc",
+			".svn/entries", "nls/.svn/a.properties", "nls/.DS_Store",
+			".git/config", "nls/.git/a.properties", ".gitattributes", ".gitignore", ".gitmodules",
+			".hg/store", ".hgignore", ".hgsub", ".hgsubstate", ".hgtags", ".bzr/branch", ".bzrignore",
+			".github/workflow.json", "nls/.svnkeep.properties" };
+
+	private static final String[][] RULES = {
+			{ "**/*.properties", "" },
+			{ "**/*", "" },
+			{ "**", "" },
+			{ "*.json", "" },
+			{ "nls/**", "" },
+			{ "nls/", "" },
+			{ "**/nls/*.properties", "" },
+			{ "src/**/x?.json", "" },
+			{ "**/*.properties, **/*.json", "build/" },
+			{ "**/*.properties,**/*.json", "build/**, **/sub/**" },
+			{ "**/*.properties", "**/*_fr.properties" },
+			{ "**/*", "**/nls/**" },
+			{ "nls/*", "nls/b*" },
+			{ "**/.*", "" },
+			{ "**/CVS/**", "" } };
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void wildcardsMatchWithinANameAndDoubleStarsAcrossDirectories() {
+		WorkspaceScanner.AntPattern pattern = new WorkspaceScanner.AntPattern("**/*.properties");
+		assertTrue(pattern.matches(path("messages.properties")));
+		assertTrue(pattern.matches(path("src/main/messages.properties")));
+		assertFalse(pattern.matches(path("src/messages.json")));
+
+		pattern = new WorkspaceScanner.AntPattern("src/*.json");
+		assertTrue(pattern.matches(path("src/messages.json")));
+		assertFalse(pattern.matches(path("src/nls/messages.json")));
+		assertFalse(pattern.matches(path("messages.json")));
+
+		pattern = new WorkspaceScanner.AntPattern("src/**/nls/?.json");
+		assertTrue(pattern.matches(path("src/nls/a.json")));
+		assertTrue(pattern.matches(path("src/x/y/nls/a.json")));
+		assertFalse(pattern.matches(path("src/nls/ab.json")));
+	}
+
+	@Test
+	public void trailingSlashMatchesEverythingUnderTheDirectory() {
+		WorkspaceScanner.AntPattern pattern = new WorkspaceScanner.AntPattern("build/");
+		assertTrue(pattern.matches(path("build/a.properties")));
+		assertTrue(pattern.matches(path("build/x/a.properties")));
+		assertTrue(pattern.matchesAllUnder(path("build")));
+		assertFalse(pattern.matches(path("src/build.properties")));
+	}
+
+	@Test
+	public void backslashesAreSeparators() {
+		WorkspaceScanner.AntPattern pattern = new WorkspaceScanner.AntPattern("src\\**\\*.json");
+		assertTrue(pattern.matches(path("src/a/b.json")));
+	}
+
+	@Test
+	public void directoriesAreOnlyEnteredWhenTheyMayHoldMatches() {
+		WorkspaceScanner.AntPattern pattern = new WorkspaceScanner.AntPattern("src/main/**/*.json");
+		assertTrue(pattern.matchesStart(path("src")));
+		assertTrue(pattern.matchesStart(path("src/main")));
+		assertTrue(pattern.matchesStart(path("src/main/nls/x")));
+		assertFalse(pattern.matchesStart(path("test")));
+		assertFalse(pattern.matchesStart(path("src/test")));
+
+		pattern = new WorkspaceScanner.AntPattern("**/.git/**");
+		assertTrue(pattern.matchesAllUnder(path("a/.git")));
+		assertFalse(pattern.matchesAllUnder(path("a/git")));
+	}
+
+	@Test
+	public void scanAppliesTheRulesAndTheDefaultExcludes() throws Exception {
+		File base = tmp.getRoot();
+		touch(base, "a.properties");
+		touch(base, "nls/b.properties");
+		touch(base, "nls/c.json");
+		touch(base, "build/d.properties");
+		touch(base, ".git/e.properties");
+		touch(base, "nls/f.properties~");
+
+		WorkspaceScanner.Result result = WorkspaceScanner.scanLocal(base, "**/*.properties, **/*.json", "build/");
+		assertEquals(Arrays.asList("a.properties", "nls/b.properties", "nls/c.json"), result.getFiles());
+		assertTrue(result.hasExclusions());
+
+		result = WorkspaceScanner.scanLocal(base, "**", "");
+		assertEquals(Arrays.asList("a.properties", "build/d.properties", "nls/b.properties", "nls/c.json"),
+				result.getFiles());
+	}
+
+	@Test
+	public void scanSelectsTheFilesListedByFilePath() throws Exception {
+		File base = tmp.getRoot();
+		for (String path : FIXTURE) {
+			touch(base, path);
+		}
+		FilePath baseDirectory = new FilePath(base);
+		for (String[] rules : RULES) {
+			List<String> expected = new ArrayList<String>();
+			for (FilePath file : baseDirectory.list(rules[0], rules[1])) {
+				expected.add(file.getRemote().substring(base.getPath().length() + 1).replace(File.separatorChar, '/'));
+			}
+			Collections.sort(expected);
+			assertEquals(rules[0] + " excluding " + rules[1], expected,
+					WorkspaceScanner.scanLocal(base, rules[0], rules[1]).getFiles());
+		}
+	}
+
+	private static String[] path(String path) {
+		return path.split("/");
+	}
+
+	private static void touch(File base, String path) throws IOException {
+		File file = new File(base, path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), new byte[0]);
+	}
+}